@@ -0,0 +1,71 @@
+package com.mapbox.mapboxandroiddemo.benchmark;
+
+import com.mapbox.mapboxandroiddemo.utils.DistanceMatrix;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares computing the local distance matrix of the Matrix API example on one thread and split over a
+ * fork-join pool, from the size of the bundled Boston charging stations asset up to thousands of stations.
+ * <p>
+ * The stations are random points in the Boston area, generated with a fixed seed so every run measures
+ * the same input.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DistanceMatrixBenchmark {
+
+  private static final double ROAD_FACTOR = 1.3;
+
+  @Param({"100", "1000", "4000"})
+  public int stationCount;
+
+  private double[] coordinates;
+  private ForkJoinPool pool;
+
+  @Setup
+  public void createStations() {
+    Random random = new Random(42);
+    coordinates = new double[stationCount * 2];
+    for (int i = 0; i < stationCount; i++) {
+      coordinates[i * 2] = -71.19 + random.nextDouble() * 0.25;
+      coordinates[i * 2 + 1] = 42.23 + random.nextDouble() * 0.2;
+    }
+    pool = new ForkJoinPool();
+  }
+
+  @TearDown
+  public void shutdownPool() {
+    pool.shutdown();
+  }
+
+  @Benchmark
+  public double[] sequential() {
+    return DistanceMatrix.compute(coordinates, ROAD_FACTOR);
+  }
+
+  @Benchmark
+  public double[] parallel() {
+    return DistanceMatrix.compute(coordinates, ROAD_FACTOR, pool);
+  }
+}
@@ -0,0 +1,127 @@
+package com.mapbox.mapboxandroiddemo.benchmark;
+
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonBinaryDecoder;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonReader;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the ways the demo app parses its bundled GeoJSON assets, for every asset.
+ * <p>
+ * Each benchmark starts from the file contents in memory, so reading from disk isn't measured. Run with
+ * the gc profiler, which the Gradle build enables, to get the allocation rate next to the throughput.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeoJsonParsingBenchmark {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  // Every GeoJSON file in MapboxAndroidDemo/src/main/assets
+  @Param({
+    "boston_charge_stations.geojson",
+    "boston_police_stations.geojson",
+    "college_of_tech.geojson",
+    "college_of_tech_lvl_one.geojson",
+    "example.geojson",
+    "fake_norway_campsites.geojson",
+    "golden_gate_lines.geojson",
+    "indoor-3d-map.geojson",
+    "la_attractions.geojson",
+    "la_hotels.geojson",
+    "marathon_route.geojson",
+    "matched_route.geojson",
+    "sf_poi.geojson",
+    "tech_annex.geojson",
+    "trace.geojson",
+    "white_house_lvl_0.geojson",
+    "white_house_lvl_1.geojson"
+  })
+  public String asset;
+
+  private byte[] geoJson;
+  private byte[] compiledGeoJson;
+
+  @Setup
+  public void readAsset() throws IOException {
+    geoJson = stripByteOrderMark(readFile("benchmark.assets", asset));
+    compiledGeoJson = readFile("benchmark.compiledAssets", GeoJsonBinaryDecoder.getCompiledAssetName(asset));
+  }
+
+  /**
+   * The original path of the examples: the whole file in a String, parsed into an org.json tree.
+   */
+  @Benchmark
+  public JSONObject orgJson() {
+    return new JSONObject(new String(geoJson, UTF_8));
+  }
+
+  /**
+   * The whole file in a String, parsed by mapbox-java's Gson based FeatureCollection.fromJson.
+   */
+  @Benchmark
+  public FeatureCollection gsonFromJson() {
+    return FeatureCollection.fromJson(new String(geoJson, UTF_8));
+  }
+
+  /**
+   * GeoJsonReader, which parses the stream token by token straight into a FeatureCollection.
+   */
+  @Benchmark
+  public FeatureCollection streaming() throws IOException {
+    return GeoJsonReader.readFeatureCollection(new ByteArrayInputStream(geoJson));
+  }
+
+  /**
+   * GeoJsonBinaryDecoder on the asset compiled by the compileGeoJsonAssets task.
+   */
+  @Benchmark
+  public FeatureCollection compiledBinary() throws IOException {
+    return GeoJsonBinaryDecoder.decode(ByteBuffer.wrap(compiledGeoJson));
+  }
+
+  private static byte[] readFile(String directoryProperty, String filename) throws IOException {
+    String directory = System.getProperty(directoryProperty);
+    if (directory == null) {
+      throw new IllegalStateException("System property " + directoryProperty + " isn't set, run the benchmarks"
+        + " through Gradle");
+    }
+    return Files.readAllBytes(new File(directory, filename).toPath());
+  }
+
+  /**
+   * Some assets start with a UTF-8 byte order mark, which org.json refuses to parse.
+   */
+  private static byte[] stripByteOrderMark(byte[] bytes) {
+    if (bytes.length >= 3 && (bytes[0] & 0xFF) == 0xEF && (bytes[1] & 0xFF) == 0xBB && (bytes[2] & 0xFF) == 0xBF) {
+      return Arrays.copyOfRange(bytes, 3, bytes.length);
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,72 @@
+package com.mapbox.mapboxandroiddemo.benchmark;
+
+import com.mapbox.mapboxandroiddemo.utils.DistanceMatrix;
+import com.mapbox.mapboxandroiddemo.utils.RouteOptimizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long the local route optimizer of the Optimization API example takes, from the dozen stops
+ * the API accepts up to a few hundred.
+ * <p>
+ * A cold solve starts from a nearest neighbour route. A warm solve adds the last stop to the solved route
+ * of the others, like the example does when a stop is tapped. The stops are random points in the
+ * Saint Petersburg area, generated with a fixed seed so every run measures the same input.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RouteOptimizerBenchmark {
+
+  @Param({"12", "50", "200"})
+  public int stopCount;
+
+  private double[] distances;
+  private int[] previousOrder;
+
+  @Setup
+  public void createStops() {
+    Random random = new Random(42);
+    double[] coordinates = new double[stopCount * 2];
+    for (int i = 0; i < stopCount; i++) {
+      coordinates[i * 2] = 30.2 + random.nextDouble() * 0.25;
+      coordinates[i * 2 + 1] = 59.85 + random.nextDouble() * 0.15;
+    }
+    distances = DistanceMatrix.compute(coordinates, 1);
+
+    // The route without the last stop, solved on the distances of the other stops
+    int previousCount = stopCount - 1;
+    double[] previousDistances = new double[previousCount * previousCount];
+    for (int from = 0; from < previousCount; from++) {
+      System.arraycopy(distances, from * stopCount, previousDistances, from * previousCount, previousCount);
+    }
+    previousOrder = RouteOptimizer.solve(previousDistances, previousCount, true);
+  }
+
+  @Benchmark
+  public int[] cold() {
+    return RouteOptimizer.solve(distances, stopCount, true);
+  }
+
+  @Benchmark
+  public int[] warm() {
+    return RouteOptimizer.solve(distances, stopCount, true, previousOrder);
+  }
+}
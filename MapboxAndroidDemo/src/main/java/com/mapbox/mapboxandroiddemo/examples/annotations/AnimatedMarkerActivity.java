@@ -26,6 +26,7 @@ public class AnimatedMarkerActivity extends AppCompatActivity implements OnMapRe
   private MapView mapView;
   private MapboxMap mapboxMap;
   private Marker marker;
+  private ValueAnimator markerAnimator;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -62,8 +63,12 @@ public class AnimatedMarkerActivity extends AppCompatActivity implements OnMapRe
   @Override
   public void onMapClick(@NonNull LatLng point) {
     // When the user clicks on the map, we want to animate the marker to that
-    // location.
-    ValueAnimator markerAnimator = ObjectAnimator.ofObject(marker, "position",
+    // location. The camera stays where it is, and a tap during the animation
+    // continues from where the marker is now.
+    if (markerAnimator != null) {
+      markerAnimator.cancel();
+    }
+    markerAnimator = ObjectAnimator.ofObject(marker, "position",
       new LatLngEvaluator(), marker.getPosition(), point);
     markerAnimator.setDuration(2000);
     markerAnimator.start();
@@ -105,6 +110,9 @@ public class AnimatedMarkerActivity extends AppCompatActivity implements OnMapRe
     if (mapboxMap != null) {
       mapboxMap.removeOnMapClickListener(this);
     }
+    if (markerAnimator != null) {
+      markerAnimator.cancel();
+    }
     mapView.onDestroy();
   }
 
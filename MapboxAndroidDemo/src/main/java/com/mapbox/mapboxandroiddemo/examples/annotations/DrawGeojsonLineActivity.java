@@ -4,10 +4,9 @@ import android.graphics.Color;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
-import android.text.TextUtils;
-import android.util.Log;
 
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.LineStringCoordinates;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.annotations.PolylineOptions;
 import com.mapbox.mapboxsdk.geometry.LatLng;
@@ -15,14 +14,6 @@ import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -30,8 +21,6 @@ import java.util.List;
  */
 public class DrawGeojsonLineActivity extends AppCompatActivity implements OnMapReadyCallback {
 
-  private static final String TAG = "DrawGeojsonLineActivity";
-
   private MapView mapView;
   private MapboxMap mapboxMap;
 
@@ -104,46 +93,8 @@ public class DrawGeojsonLineActivity extends AppCompatActivity implements OnMapR
   private class DrawGeoJson extends AsyncTask<Void, Void, List<LatLng>> {
     @Override
     protected List<LatLng> doInBackground(Void... voids) {
-
-      ArrayList<LatLng> points = new ArrayList<>();
-
-      try {
-        // Load GeoJSON file
-        InputStream inputStream = getAssets().open("example.geojson");
-        BufferedReader rd = new BufferedReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
-        StringBuilder sb = new StringBuilder();
-        int cp;
-        while ((cp = rd.read()) != -1) {
-          sb.append((char) cp);
-        }
-
-        inputStream.close();
-
-        // Parse JSON
-        JSONObject json = new JSONObject(sb.toString());
-        JSONArray features = json.getJSONArray("features");
-        JSONObject feature = features.getJSONObject(0);
-        JSONObject geometry = feature.getJSONObject("geometry");
-        if (geometry != null) {
-          String type = geometry.getString("type");
-
-          // Our GeoJSON only has one feature: a line string
-          if (!TextUtils.isEmpty(type) && type.equalsIgnoreCase("LineString")) {
-
-            // Get the Coordinates
-            JSONArray coords = geometry.getJSONArray("coordinates");
-            for (int lc = 0; lc < coords.length(); lc++) {
-              JSONArray coord = coords.getJSONArray(lc);
-              LatLng latLng = new LatLng(coord.getDouble(1), coord.getDouble(0));
-              points.add(latLng);
-            }
-          }
-        }
-      } catch (Exception exception) {
-        Log.e(TAG, "Exception Loading GeoJSON: " + exception.toString());
-      }
-
-      return points;
+      // Our GeoJSON only has one feature: a line string
+      return LineStringCoordinates.fromAsset(DrawGeojsonLineActivity.this, "example.geojson").toLatLngs();
     }
 
     @Override
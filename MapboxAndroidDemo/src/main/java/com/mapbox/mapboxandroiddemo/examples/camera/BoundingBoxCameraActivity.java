@@ -6,9 +6,10 @@ import android.support.v7.app.AppCompatActivity;
 import android.widget.Toast;
 
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.CameraAnimator;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.annotations.MarkerOptions;
-import com.mapbox.mapboxsdk.camera.CameraUpdateFactory;
+import com.mapbox.mapboxsdk.camera.CameraPosition;
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.geometry.LatLngBounds;
 import com.mapbox.mapboxsdk.maps.MapView;
@@ -23,6 +24,7 @@ public class BoundingBoxCameraActivity extends AppCompatActivity implements OnMa
 
   private MapView mapView;
   private MapboxMap mapboxMap;
+  private CameraAnimator cameraAnimator;
 
   private LatLng locationOne;
   private LatLng locationTwo;
@@ -47,6 +49,7 @@ public class BoundingBoxCameraActivity extends AppCompatActivity implements OnMa
   public void onMapReady(MapboxMap mapboxMap) {
 
     BoundingBoxCameraActivity.this.mapboxMap = mapboxMap;
+    cameraAnimator = new CameraAnimator(mapboxMap);
 
     // Declare two locations on map
     locationOne = new LatLng(36.532128, -93.489121);
@@ -76,7 +79,9 @@ public class BoundingBoxCameraActivity extends AppCompatActivity implements OnMa
       .include(locationTwo) // Southwest
       .build();
 
-    mapboxMap.easeCamera(CameraUpdateFactory.newLatLngBounds(latLngBounds, 50), 5000);
+    // Animate to the camera position which fits the bounds, with 50 pixels of padding on every side
+    CameraPosition cameraPosition = mapboxMap.getCameraForLatLngBounds(latLngBounds, new int[] {50, 50, 50, 50});
+    cameraAnimator.animateTo(cameraPosition, 5000);
   }
 
   @Override
@@ -120,6 +125,7 @@ public class BoundingBoxCameraActivity extends AppCompatActivity implements OnMa
     super.onDestroy();
     if (mapboxMap != null) {
       mapboxMap.removeOnMapClickListener(this);
+      cameraAnimator.cancel();
     }
     mapView.onDestroy();
   }
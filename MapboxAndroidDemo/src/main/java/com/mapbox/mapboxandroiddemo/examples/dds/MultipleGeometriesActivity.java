@@ -2,9 +2,16 @@ package com.mapbox.mapboxandroiddemo.examples.dds;
 
 import android.graphics.Color;
 import android.os.Bundle;
+import android.support.annotation.NonNull;
 import android.support.v7.app.AppCompatActivity;
+import android.widget.Toast;
 
+import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.FeatureCollectionCache;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonSourceLoader;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonTileFeeder;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonTiler;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -14,9 +21,6 @@ import com.mapbox.mapboxsdk.style.layers.FillLayer;
 import com.mapbox.mapboxsdk.style.layers.PropertyFactory;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
-import java.io.IOException;
-import java.io.InputStream;
-
 import static com.mapbox.mapboxsdk.style.expressions.Expression.eq;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.geometryType;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.literal;
@@ -25,7 +29,10 @@ public class MultipleGeometriesActivity extends AppCompatActivity implements OnM
 
   private MapView mapView;
   private MapboxMap mapboxMap;
+  private GeoJsonSourceLoader sourceLoader;
+  private GeoJsonTileFeeder tileFeeder;
   private static final String GEOJSON_SOURCE_ID = "GEOJSONFILE";
+  private static final String GEOJSON_FILENAME = "fake_norway_campsites.geojson";
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -38,6 +45,15 @@ public class MultipleGeometriesActivity extends AppCompatActivity implements OnM
     // This contains the MapView in XML and needs to be called after the access token is configured.
     setContentView(R.layout.activity_multiple_geometries);
 
+    sourceLoader = new GeoJsonSourceLoader(this);
+    sourceLoader.setOnLoadFailedListener(new GeoJsonSourceLoader.OnLoadFailedListener() {
+      @Override
+      public void onLoadFailed(@NonNull String filename) {
+        Toast.makeText(MultipleGeometriesActivity.this, getString(R.string.geojson_asset_load_error, filename),
+          Toast.LENGTH_SHORT).show();
+      }
+    });
+
     mapView = findViewById(R.id.mapView);
     mapView.onCreate(savedInstanceState);
     mapView.getMapAsync(this);
@@ -52,10 +68,24 @@ public class MultipleGeometriesActivity extends AppCompatActivity implements OnM
   }
 
   private void createGeoJsonSource() {
-    // Load data from GeoJSON file in the assets folder
-    GeoJsonSource geoJsonSource = new GeoJsonSource(GEOJSON_SOURCE_ID,
-      loadJsonFromAsset("fake_norway_campsites.geojson"));
+    // Load data from GeoJSON file in the assets folder and cut it into tiles in the background, the
+    // layers are added to the map right away and show the tiles on screen as soon as they are ready
+    final GeoJsonSource geoJsonSource = new GeoJsonSource(GEOJSON_SOURCE_ID);
     mapboxMap.addSource(geoJsonSource);
+    sourceLoader.load(GEOJSON_FILENAME, GeoJsonSourceLoader.PRIORITY_NORMAL,
+      new GeoJsonSourceLoader.Preparation<GeoJsonTiler>() {
+        @NonNull
+        @Override
+        public GeoJsonTiler prepare(@NonNull FeatureCollection featureCollection) {
+          return GeoJsonTiler.build(featureCollection);
+        }
+      }, new GeoJsonSourceLoader.OnPreparedListener<GeoJsonTiler>() {
+        @Override
+        public void onPrepared(@NonNull GeoJsonTiler tiler) {
+          tileFeeder = new GeoJsonTileFeeder(tiler);
+          tileFeeder.attach(mapboxMap, geoJsonSource);
+        }
+      }, FeatureCollectionCache.NO_PROPERTIES);
   }
 
   private void addPolygonLayer() {
@@ -113,6 +143,10 @@ public class MultipleGeometriesActivity extends AppCompatActivity implements OnM
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    sourceLoader.cancel();
+    if (tileFeeder != null) {
+      tileFeeder.detach();
+    }
     mapView.onDestroy();
   }
 
@@ -121,19 +155,4 @@ public class MultipleGeometriesActivity extends AppCompatActivity implements OnM
     super.onSaveInstanceState(outState);
     mapView.onSaveInstanceState(outState);
   }
-
-  private String loadJsonFromAsset(String filename) {
-    try {
-      InputStream is = getAssets().open(filename);
-      int size = is.available();
-      byte[] buffer = new byte[size];
-      is.read(buffer);
-      is.close();
-      return new String(buffer, "UTF-8");
-
-    } catch (IOException ex) {
-      ex.printStackTrace();
-      return null;
-    }
-  }
 }
\ No newline at end of file
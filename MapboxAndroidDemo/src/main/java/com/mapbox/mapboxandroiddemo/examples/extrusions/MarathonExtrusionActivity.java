@@ -3,8 +3,11 @@ package com.mapbox.mapboxandroiddemo.examples.extrusions;
 import android.graphics.Color;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
 
+import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.FeatureCollectionCache;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -12,9 +15,6 @@ import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 import com.mapbox.mapboxsdk.style.layers.FillExtrusionLayer;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
-import java.io.IOException;
-import java.io.InputStream;
-
 import static com.mapbox.mapboxsdk.style.expressions.Expression.get;
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.fillExtrusionColor;
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.fillExtrusionHeight;
@@ -47,8 +47,13 @@ public class MarathonExtrusionActivity extends AppCompatActivity {
         MarathonExtrusionActivity.this.mapboxMap = mapboxMap;
 
         // Add the marathon route source to the map
-        GeoJsonSource courseRouteGeoJson = new GeoJsonSource(
-          "coursedata", loadJsonFromAsset("marathon_route.geojson"));
+        FeatureCollection courseRoute = FeatureCollectionCache.loadFeatureCollection(MarathonExtrusionActivity.this,
+          "marathon_route.geojson");
+        if (courseRoute == null) {
+          Log.e("MarathonExtrusion", "Unable to load the marathon route, not adding the extrusions");
+          return;
+        }
+        GeoJsonSource courseRouteGeoJson = new GeoJsonSource("coursedata", courseRoute);
         mapboxMap.addSource(courseRouteGeoJson);
         addExtrusionsLayerToMap();
       }
@@ -64,20 +69,4 @@ public class MarathonExtrusionActivity extends AppCompatActivity {
       fillExtrusionHeight(get("e")));
     mapboxMap.addLayer(courseExtrusionLayer);
   }
-
-  private String loadJsonFromAsset(String filename) {
-    // Using this method to load in GeoJSON files from the assets folder.
-    try {
-      InputStream is = getAssets().open(filename);
-      int size = is.available();
-      byte[] buffer = new byte[size];
-      is.read(buffer);
-      is.close();
-      return new String(buffer, "UTF-8");
-
-    } catch (IOException ex) {
-      ex.printStackTrace();
-      return null;
-    }
-  }
 }
@@ -10,11 +10,10 @@ import com.mapbox.api.matching.v5.MapboxMapMatching;
 import com.mapbox.api.matching.v5.models.MapMatchingResponse;
 import com.mapbox.core.constants.Constants;
 import com.mapbox.core.exceptions.ServicesException;
-import com.mapbox.geojson.FeatureCollection;
-import com.mapbox.geojson.LineString;
 import com.mapbox.geojson.Point;
 import com.mapbox.geojson.utils.PolylineUtils;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.LineStringCoordinates;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.annotations.Polyline;
 import com.mapbox.mapboxsdk.annotations.PolylineOptions;
@@ -23,10 +22,6 @@ import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -112,50 +107,23 @@ public class MapMatchingActivity extends AppCompatActivity {
     mapView.onSaveInstanceState(outState);
   }
 
-  private class DrawGeoJson extends AsyncTask<Void, Void, List<Point>> {
+  private class DrawGeoJson extends AsyncTask<Void, Void, LineStringCoordinates> {
     @Override
-    protected List<Point> doInBackground(Void... voids) {
-
-      List<Point> points = new ArrayList<>();
-
-      try {
-        // Load GeoJSON file
-        InputStream inputStream = getAssets().open("trace.geojson");
-        BufferedReader rd = new BufferedReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
-        StringBuilder sb = new StringBuilder();
-        int cp;
-        while ((cp = rd.read()) != -1) {
-          sb.append((char) cp);
-        }
-        inputStream.close();
-        FeatureCollection featureCollection = FeatureCollection.fromJson(sb.toString());
-        LineString lineString = (LineString) featureCollection.features().get(0).geometry();
-        for (Point singlePosition : lineString.coordinates()) {
-          points.add(Point.fromLngLat(singlePosition.longitude(),
-            singlePosition.latitude()));
-        }
-      } catch (Exception exception) {
-        Log.e(TAG, "Exception Loading GeoJSON: " + exception.toString());
-      }
-      return points;
+    protected LineStringCoordinates doInBackground(Void... voids) {
+      return LineStringCoordinates.fromAsset(MapMatchingActivity.this, "trace.geojson");
     }
 
     @Override
-    protected void onPostExecute(List<Point> points) {
-      super.onPostExecute(points);
-      drawBeforeMapMatching(points);
-      drawMapMatched(points);
+    protected void onPostExecute(LineStringCoordinates coordinates) {
+      super.onPostExecute(coordinates);
+      drawBeforeMapMatching(coordinates);
+      drawMapMatched(coordinates.toPoints());
     }
   }
 
-  private void drawBeforeMapMatching(List<Point> points) {
-    LatLng[] pointsArray = new LatLng[points.size()];
-    for (int i = 0; i < points.size(); i++) {
-      pointsArray[i] = new LatLng(points.get(i).latitude(), points.get(i).longitude());
-    }
-
+  private void drawBeforeMapMatching(LineStringCoordinates coordinates) {
     map.addPolyline(new PolylineOptions()
-      .add(pointsArray)
+      .addAll(coordinates.toLatLngs())
       .color(Color.parseColor("#8a8acb"))
       .alpha(0.65f)
       .width(4));
@@ -1,8 +1,11 @@
 package com.mapbox.mapboxandroiddemo.examples.javaservices;
 
 import android.content.Context;
+import android.os.AsyncTask;
+import android.os.Build;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
+import android.support.annotation.RequiresApi;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.CardView;
 import android.support.v7.widget.DefaultItemAnimator;
@@ -10,6 +13,7 @@ import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.LinearSnapHelper;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.SnapHelper;
+import android.text.TextUtils;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -18,12 +22,15 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.mapbox.api.directions.v5.DirectionsCriteria;
-import com.mapbox.api.matrix.v1.MapboxMatrix;
-import com.mapbox.api.matrix.v1.models.MatrixResponse;
 import com.mapbox.geojson.Feature;
 import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.DistanceMatrix;
+import com.mapbox.mapboxandroiddemo.utils.FeatureCollectionCache;
+import com.mapbox.mapboxandroiddemo.utils.FeaturePropertyTable;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonAssetLoader;
+import com.mapbox.mapboxandroiddemo.utils.TiledMatrixClient;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.annotations.Icon;
 import com.mapbox.mapboxsdk.annotations.IconFactory;
@@ -35,28 +42,45 @@ import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 import com.mapbox.turf.TurfConversion;
 
-import java.io.InputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
-
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
-
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Use the Mapbox Java Services SDK's Matrix API to retrieve travel times between many points.
  */
 public class MatrixApiActivity extends AppCompatActivity {
 
+  // A typical ratio of driving distance to straight-line distance in a city, for the offline estimates
+  private static final double ROAD_FACTOR = 1.3;
+  private static final double MILES_PER_METER = TurfConversion.convertLength(1, "meters", "miles");
+
   private MapView mapView;
   private MapboxMap mapboxMap;
   private List<Point> pointList;
   private FeatureCollection featureCollection;
+  private FeaturePropertyTable stationProperties;
   private RecyclerView recyclerView;
   private MatrixApiLocationRecyclerViewAdapter matrixApiLocationRecyclerViewAdapter;
   private ArrayList<SingleRecyclerViewMatrixLocation> matrixLocationList;
+  // The index of each marker in pointList, markers are compared by identity
+  private final Map<Marker, Integer> markerIndices = new IdentityHashMap<>();
+  // The durations between all points, row by row from each origin. Null until the Matrix API answered,
+  // or the local estimate of the distances if it couldn't be reached.
+  private double[] durationMatrix;
+  private boolean matrixIsEstimate;
+  private boolean matrixCallInFlight;
+  // The marker clicked last while the matrix was requested
+  private int pendingOrigin = -1;
+  // Only used on the main thread, DecimalFormat isn't thread safe
+  private final DecimalFormat distanceFormat = new DecimalFormat("#.##");
+  private TiledMatrixClient matrixClient;
+  private TiledMatrixClient.Request matrixRequest;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -71,6 +95,8 @@ public class MatrixApiActivity extends AppCompatActivity {
 
     recyclerView = findViewById(R.id.matrix_api_recyclerview);
 
+    matrixClient = new TiledMatrixClient(getString(R.string.access_token), DirectionsCriteria.PROFILE_DRIVING);
+
     // Create list of positions from local GeoJSON file
     initPositionListFromGeoJsonFile();
 
@@ -93,10 +119,23 @@ public class MatrixApiActivity extends AppCompatActivity {
         mapboxMap.setOnMarkerClickListener(new MapboxMap.OnMarkerClickListener() {
           @Override
           public boolean onMarkerClick(@NonNull Marker marker) {
-
-            // Make a call to the Mapbox Matrix API
-            makeMapboxMatrixApiCall(getClickedMarkerNumInPositionList(marker), Point.fromLngLat(
-              marker.getPosition().getLongitude(), marker.getPosition().getLatitude()));
+            Integer markerIndex = markerIndices.get(marker);
+            if (markerIndex == null) {
+              return false;
+            }
+            if (durationMatrix != null) {
+              // The matrix holds the durations from every marker, no need to ask again
+              showDurationsFrom(markerIndex);
+              if (matrixIsEstimate) {
+                // Try to replace the estimate with real durations
+                pendingOrigin = markerIndex;
+                makeMapboxMatrixApiCall();
+              }
+            } else {
+              // Make a call to the Mapbox Matrix API
+              pendingOrigin = markerIndex;
+              makeMapboxMatrixApiCall();
+            }
             return false;
           }
         });
@@ -106,20 +145,6 @@ public class MatrixApiActivity extends AppCompatActivity {
     });
   }
 
-  private int getClickedMarkerNumInPositionList(Marker clickedMarker) {
-    int clickedMarkerIndexPositionInList = -1;
-    if (clickedMarker != null) {
-      for (Marker singleMarker : mapboxMap.getMarkers()) {
-        if (singleMarker == clickedMarker) {
-          clickedMarkerIndexPositionInList = mapboxMap.getMarkers().indexOf(singleMarker);
-        }
-      }
-      return clickedMarkerIndexPositionInList;
-    } else {
-      return 0;
-    }
-  }
-
   private void initRecyclerView() {
     matrixApiLocationRecyclerViewAdapter = new MatrixApiLocationRecyclerViewAdapter(this,
       matrixLocationList);
@@ -131,81 +156,124 @@ public class MatrixApiActivity extends AppCompatActivity {
     snapHelper.attachToRecyclerView(recyclerView);
   }
 
-  private void makeMapboxMatrixApiCall(final int markerPositionInList, Point pointOfClickedMarker) {
-
-    // Build Mapbox Matrix API parameters
-    MapboxMatrix directionsMatrixClient = MapboxMatrix.builder()
-      .accessToken(getString(R.string.access_token))
-      .profile(DirectionsCriteria.PROFILE_DRIVING)
-      .coordinates(pointList)
-      .build();
+  private void makeMapboxMatrixApiCall() {
+    if (matrixCallInFlight) {
+      // The response shows the durations from the marker which was clicked last
+      return;
+    }
+    matrixCallInFlight = true;
 
-    // Handle the API response
-    directionsMatrixClient.enqueueCall(new Callback<MatrixResponse>() {
+    // Stations beyond the per-request limit of the Matrix API are requested in blocks
+    matrixRequest = matrixClient.requestDurations(pointList, new TiledMatrixClient.Callback() {
       @Override
-      public void onResponse(Call<MatrixResponse> call,
-                             Response<MatrixResponse> response) {
-        List<Double[]> durationsToAllOfTheLocationsFromTheOrigin = response.body().durations();
-        for (int x = 0; x < durationsToAllOfTheLocationsFromTheOrigin.size(); x++) {
-          String finalConvertedFormattedDistance = String.valueOf(new DecimalFormat("#.##")
-            .format(TurfConversion.convertLength(
-              durationsToAllOfTheLocationsFromTheOrigin.get(markerPositionInList)[x],
-              "meters", "miles")));
-          if (x == markerPositionInList) {
-            matrixLocationList.get(x).setDistanceFromOrigin(finalConvertedFormattedDistance);
-          }
-          if (x != markerPositionInList) {
-            matrixLocationList.get(x).setDistanceFromOrigin(finalConvertedFormattedDistance);
-            matrixApiLocationRecyclerViewAdapter.notifyDataSetChanged();
-          }
-        }
+      public void onDurations(@NonNull double[] durations) {
+        matrixCallInFlight = false;
+        durationMatrix = durations;
+        matrixIsEstimate = false;
+        showDurationsFrom(pendingOrigin);
       }
 
       @Override
-      public void onFailure(Call<MatrixResponse> call, Throwable throwable) {
+      public void onFailure(@NonNull IOException exception) {
+        matrixCallInFlight = false;
+        Log.d("MatrixApiActivity", "onResponse onFailure", exception);
+        if (durationMatrix != null) {
+          // The estimate is shown already
+          return;
+        }
         Toast.makeText(MatrixApiActivity.this, R.string.call_error,
           Toast.LENGTH_SHORT).show();
-        Log.d("MatrixApiActivity", "onResponse onFailure");
+        new LocalDistanceMatrixTask(MatrixApiActivity.this).execute(getCoordinates());
       }
     });
   }
 
+  private double[] getCoordinates() {
+    double[] coordinates = new double[pointList.size() * 2];
+    for (int i = 0; i < pointList.size(); i++) {
+      coordinates[i * 2] = pointList.get(i).longitude();
+      coordinates[i * 2 + 1] = pointList.get(i).latitude();
+    }
+    return coordinates;
+  }
+
+  /**
+   * Invoked with the local estimate of the distances between the stations, when the Matrix API couldn't be
+   * reached.
+   */
+  private void setLocalDistanceMatrix(double[] distanceMatrix) {
+    if (durationMatrix != null) {
+      return;
+    }
+    durationMatrix = distanceMatrix;
+    matrixIsEstimate = true;
+    Toast.makeText(this, R.string.matrix_local_estimate, Toast.LENGTH_SHORT).show();
+    showDurationsFrom(pendingOrigin);
+  }
+
+  /**
+   * Format the distances from a marker for all cards in one pass, and rebind only the range of cards whose
+   * text changed.
+   */
+  private void showDurationsFrom(int markerPositionInList) {
+    int size = pointList.size();
+    int firstChanged = -1;
+    int lastChanged = -1;
+    for (int x = 0; x < size; x++) {
+      double duration = durationMatrix[markerPositionInList * size + x];
+      String finalConvertedFormattedDistance = Double.isNaN(duration) ? null
+        : distanceFormat.format(duration * MILES_PER_METER);
+      SingleRecyclerViewMatrixLocation location = matrixLocationList.get(x);
+      if (!TextUtils.equals(location.getDistanceFromOrigin(), finalConvertedFormattedDistance)
+        || location.isDistanceEstimate() != matrixIsEstimate) {
+        location.setDistanceFromOrigin(finalConvertedFormattedDistance);
+        location.setDistanceEstimate(matrixIsEstimate);
+        if (firstChanged == -1) {
+          firstChanged = x;
+        }
+        lastChanged = x;
+      }
+    }
+    if (firstChanged != -1) {
+      matrixApiLocationRecyclerViewAdapter.notifyItemRangeChanged(firstChanged, lastChanged - firstChanged + 1);
+    }
+  }
+
   private void addMarkers() {
+    if (stationProperties == null) {
+      return;
+    }
     Icon lightningBoltIcon = IconFactory.getInstance(MatrixApiActivity.this)
       .fromResource(R.drawable.lightning_bolt);
-    for (Feature feature : featureCollection.features()) {
-      mapboxMap.addMarker(new MarkerOptions()
-        .position(new LatLng(feature.getProperty("Latitude").getAsDouble(),
-          feature.getProperty("Longitude").getAsDouble()))
-        .snippet(feature.getStringProperty("Station_Name"))
+    for (int i = 0; i < stationProperties.size(); i++) {
+      Marker marker = mapboxMap.addMarker(new MarkerOptions()
+        .position(new LatLng(stationProperties.getNumberProperty(i, "Latitude").doubleValue(),
+          stationProperties.getNumberProperty(i, "Longitude").doubleValue()))
+        .snippet(stationProperties.getStringProperty(i, "Station_Name"))
         .icon(lightningBoltIcon));
-    }
-  }
-
-  private String loadGeoJsonFromAsset(String filename) {
-    try {
-      // Load GeoJSON file from local asset folder
-      InputStream is = getAssets().open(filename);
-      int size = is.available();
-      byte[] buffer = new byte[size];
-      is.read(buffer);
-      is.close();
-      return new String(buffer, "UTF-8");
-    } catch (Exception exception) {
-      Log.d("MatrixApiActivity", "Exception Loading GeoJSON: " + exception.toString());
-      exception.printStackTrace();
-      return null;
+      markerIndices.put(marker, i);
     }
   }
 
   private void initPositionListFromGeoJsonFile() {
 
-    // Get GeoJSON features from GeoJSON file in the assets folder
-    featureCollection = FeatureCollection.fromJson(loadGeoJsonFromAsset("boston_charge_stations.geojson"));
+    // Get GeoJSON features from GeoJSON file in the assets folder. Only a few of the many properties of
+    // the stations are read, so they are kept in a table instead of on the features
+    featureCollection = FeatureCollectionCache.loadFeatureCollection(this, "boston_charge_stations.geojson",
+      FeatureCollectionCache.NO_PROPERTIES);
+    stationProperties = GeoJsonAssetLoader.loadPropertyTable(this, "boston_charge_stations.geojson");
 
     // Initialize List<Position> for eventual use in the Matrix API call
     pointList = new ArrayList<>();
 
+    if (featureCollection == null || stationProperties == null) {
+      Log.e("MatrixApiActivity", "Unable to load the charging stations, not showing any");
+      // The stations are only shown with both their points and their properties
+      featureCollection = null;
+      stationProperties = null;
+      return;
+    }
+
     // Get the position of each GeoJSON feature and build the list of Position
     // objects for eventual use in the Matrix API call
     for (Feature singleLocation : featureCollection.features()) {
@@ -215,9 +283,13 @@ public class MatrixApiActivity extends AppCompatActivity {
 
   private void initMatrixLocationListForRecyclerView() {
     matrixLocationList = new ArrayList<>();
-    for (Feature feature : featureCollection.features()) {
+    if (featureCollection == null) {
+      return;
+    }
+    for (int i = 0; i < featureCollection.features().size(); i++) {
+      Feature feature = featureCollection.features().get(i);
       SingleRecyclerViewMatrixLocation singleRecyclerViewLocation = new SingleRecyclerViewMatrixLocation();
-      singleRecyclerViewLocation.setName(feature.getStringProperty("Station_Name"));
+      singleRecyclerViewLocation.setName(stationProperties.getStringProperty(i, "Station_Name"));
       singleRecyclerViewLocation.setLocationLatLng(new LatLng(((Point)
         feature.geometry()).latitude(),
         ((Point) feature.geometry()).longitude()));
@@ -259,6 +331,10 @@ public class MatrixApiActivity extends AppCompatActivity {
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    if (matrixRequest != null) {
+      matrixRequest.cancel();
+    }
+    matrixClient.shutdown();
     mapView.onDestroy();
   }
 
@@ -268,6 +344,46 @@ public class MatrixApiActivity extends AppCompatActivity {
     mapView.onSaveInstanceState(outState);
   }
 
+  /**
+   * AsyncTask to estimate the distances between all stations on the device, from their great-circle
+   * distances scaled by the road factor. The rows are computed in parallel where fork-join is available.
+   */
+  private static class LocalDistanceMatrixTask extends AsyncTask<double[], Void, double[]> {
+
+    private final WeakReference<MatrixApiActivity> activityRef;
+
+    LocalDistanceMatrixTask(MatrixApiActivity activity) {
+      this.activityRef = new WeakReference<>(activity);
+    }
+
+    @Override
+    protected double[] doInBackground(double[]... coordinates) {
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+        return computeInParallel(coordinates[0]);
+      }
+      return DistanceMatrix.compute(coordinates[0], ROAD_FACTOR);
+    }
+
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    private static double[] computeInParallel(double[] coordinates) {
+      ForkJoinPool pool = new ForkJoinPool();
+      try {
+        return DistanceMatrix.compute(coordinates, ROAD_FACTOR, pool);
+      } finally {
+        pool.shutdown();
+      }
+    }
+
+    @Override
+    protected void onPostExecute(double[] distanceMatrix) {
+      super.onPostExecute(distanceMatrix);
+      MatrixApiActivity activity = activityRef.get();
+      if (activity != null) {
+        activity.setLocalDistanceMatrix(distanceMatrix);
+      }
+    }
+  }
+
   /**
    * POJO model class for a single location in the recyclerview
    */
@@ -276,6 +392,7 @@ public class MatrixApiActivity extends AppCompatActivity {
     private String name;
     private LatLng locationLatLng;
     private String distanceFromOrigin;
+    private boolean distanceEstimate;
 
     public String getName() {
       return name;
@@ -293,6 +410,14 @@ public class MatrixApiActivity extends AppCompatActivity {
       this.distanceFromOrigin = distanceFromOrigin;
     }
 
+    public boolean isDistanceEstimate() {
+      return distanceEstimate;
+    }
+
+    public void setDistanceEstimate(boolean distanceEstimate) {
+      this.distanceEstimate = distanceEstimate;
+    }
+
     public void setLocationLatLng(LatLng locationLatLng) {
       this.locationLatLng = locationLatLng;
     }
@@ -323,7 +448,8 @@ public class MatrixApiActivity extends AppCompatActivity {
       holder.name.setText(singleRecyclerViewLocation.getName());
 
       String finalDistance = singleRecyclerViewLocation.getDistanceFromOrigin()
-        == null ? "" : String.format(context.getString(R.string.miles_distance),
+        == null ? "" : String.format(context.getString(singleRecyclerViewLocation.isDistanceEstimate()
+        ? R.string.miles_distance_estimate : R.string.miles_distance),
         singleRecyclerViewLocation.getDistanceFromOrigin());
       holder.distance.setText(finalDistance);
     }
@@ -14,6 +14,8 @@ import com.mapbox.api.optimization.v1.models.OptimizationResponse;
 import com.mapbox.geojson.LineString;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.DistanceMatrix;
+import com.mapbox.mapboxandroiddemo.utils.RouteOptimizer;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.annotations.MarkerOptions;
 import com.mapbox.mapboxsdk.annotations.Polyline;
@@ -45,6 +47,9 @@ public class OptimizationActivity extends AppCompatActivity implements OnMapRead
   private DirectionsRoute optimizedRoute;
   private MapboxOptimization optimizedClient;
   private Polyline optimizedPolyline;
+  private Polyline localPolyline;
+  // The order of the stops found on the device, the warm start for the next stop
+  private int[] localOrder;
   private List<Point> stops;
   private Point origin;
 
@@ -52,6 +57,7 @@ public class OptimizationActivity extends AppCompatActivity implements OnMapRead
   private static final String ANY = "any";
   private static final String TEAL_COLOR = "#23D2BE";
   private static final int POLYLINE_WIDTH = 5;
+  private static final float LOCAL_ROUTE_ALPHA = 0.5f;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -95,6 +101,7 @@ public class OptimizationActivity extends AppCompatActivity implements OnMapRead
     } else {
       addDestinationMarker(point);
       addPointToStopsList(point);
+      drawLocalRoute();
       getOptimizedRoute(stops);
     }
   }
@@ -102,6 +109,8 @@ public class OptimizationActivity extends AppCompatActivity implements OnMapRead
   @Override
   public void onMapLongClick(@NonNull LatLng point) {
     mapboxMap.clear();
+    localPolyline = null;
+    localOrder = null;
     stops.clear();
     addFirstStopToStopsList();
   }
@@ -169,11 +178,48 @@ public class OptimizationActivity extends AppCompatActivity implements OnMapRead
     });
   }
 
+  /**
+   * Order the stops on the device and connect them with straight lines, so the map answers a click straight
+   * away. The route along the roads replaces the lines once the Optimization API returns it.
+   */
+  private void drawLocalRoute() {
+    double[] coordinates = new double[stops.size() * 2];
+    for (int i = 0; i < stops.size(); i++) {
+      coordinates[i * 2] = stops.get(i).longitude();
+      coordinates[i * 2 + 1] = stops.get(i).latitude();
+    }
+    // The API returns a round trip, the local route is one too
+    localOrder = RouteOptimizer.solve(DistanceMatrix.compute(coordinates, 1), stops.size(), true, localOrder);
+    LatLng[] pointsToDraw = new LatLng[localOrder.length + 1];
+    for (int i = 0; i <= localOrder.length; i++) {
+      Point stop = stops.get(localOrder[i % localOrder.length]);
+      pointsToDraw[i] = new LatLng(stop.latitude(), stop.longitude());
+    }
+
+    // The previous route of either kind doesn't visit the new stop
+    if (optimizedPolyline != null) {
+      mapboxMap.removePolyline(optimizedPolyline);
+      optimizedPolyline = null;
+    }
+    if (localPolyline != null) {
+      mapboxMap.removePolyline(localPolyline);
+    }
+    localPolyline = mapboxMap.addPolyline(new PolylineOptions()
+      .add(pointsToDraw)
+      .color(Color.parseColor(TEAL_COLOR))
+      .alpha(LOCAL_ROUTE_ALPHA)
+      .width(POLYLINE_WIDTH));
+  }
+
   private void drawOptimizedRoute(DirectionsRoute route) {
     // Remove old polyline
     if (optimizedPolyline != null) {
       mapboxMap.removePolyline(optimizedPolyline);
     }
+    if (localPolyline != null) {
+      mapboxMap.removePolyline(localPolyline);
+      localPolyline = null;
+    }
     // Draw points on MapView
     LatLng[] pointsToDraw = convertLineStringToLatLng(route);
     optimizedPolyline = mapboxMap.addPolyline(new PolylineOptions()
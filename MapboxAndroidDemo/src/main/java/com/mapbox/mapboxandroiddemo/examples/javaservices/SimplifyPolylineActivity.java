@@ -4,12 +4,11 @@ import android.graphics.Color;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
-import android.text.TextUtils;
-import android.util.Log;
 
 import com.mapbox.geojson.Point;
 import com.mapbox.geojson.utils.PolylineUtils;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.LineStringCoordinates;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.annotations.PolylineOptions;
 import com.mapbox.mapboxsdk.geometry.LatLng;
@@ -17,14 +16,6 @@ import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -33,8 +24,6 @@ import java.util.List;
  */
 public class SimplifyPolylineActivity extends AppCompatActivity {
 
-  private static final String TAG = "SimplifyLineActivity";
-
   private MapView mapView;
   private MapboxMap map;
 
@@ -104,82 +93,34 @@ public class SimplifyPolylineActivity extends AppCompatActivity {
     mapView.onSaveInstanceState(outState);
   }
 
-  private class DrawGeoJson extends AsyncTask<Void, Void, List<Point>> {
+  private class DrawGeoJson extends AsyncTask<Void, Void, LineStringCoordinates> {
     @Override
-    protected List<Point> doInBackground(Void... voids) {
-
-      List<Point> points = new ArrayList<>();
-
-      try {
-        // Load GeoJSON file
-        InputStream inputStream = getAssets().open("matched_route.geojson");
-        BufferedReader rd = new BufferedReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
-        StringBuilder sb = new StringBuilder();
-        int cp;
-        while ((cp = rd.read()) != -1) {
-          sb.append((char) cp);
-        }
-
-        inputStream.close();
-
-        // Parse JSON
-        JSONObject json = new JSONObject(sb.toString());
-        JSONArray features = json.getJSONArray("features");
-        JSONObject feature = features.getJSONObject(0);
-        JSONObject geometry = feature.getJSONObject("geometry");
-        if (geometry != null) {
-          String type = geometry.getString("type");
-
-          // Our GeoJSON only has one feature: a line string
-          if (!TextUtils.isEmpty(type) && type.equalsIgnoreCase("LineString")) {
-
-            // Get the Coordinates
-            JSONArray coords = geometry.getJSONArray("coordinates");
-            for (int lc = 0; lc < coords.length(); lc++) {
-              JSONArray coord = coords.getJSONArray(lc);
-              Point position = Point.fromLngLat(coord.getDouble(0), coord.getDouble(1));
-              points.add(position);
-            }
-          }
-        }
-      } catch (Exception exception) {
-        Log.e(TAG, "Exception Loading GeoJSON: " + exception.toString());
-      }
-
-      return points;
+    protected LineStringCoordinates doInBackground(Void... voids) {
+      // Our GeoJSON only has one feature: a line string
+      return LineStringCoordinates.fromAsset(SimplifyPolylineActivity.this, "matched_route.geojson");
     }
 
     @Override
-    protected void onPostExecute(List<Point> points) {
-      super.onPostExecute(points);
+    protected void onPostExecute(LineStringCoordinates coordinates) {
+      super.onPostExecute(coordinates);
 
-      drawBeforeSimplify(points);
-      drawSimplify(points);
+      drawBeforeSimplify(coordinates);
+      drawSimplify(coordinates);
 
     }
   }
 
-  private void drawBeforeSimplify(List<Point> points) {
-
-    LatLng[] pointsArray = new LatLng[points.size()];
-    for (int i = 0; i < points.size(); i++) {
-      pointsArray[i] = new LatLng(points.get(i).latitude(), points.get(i).longitude());
-    }
+  private void drawBeforeSimplify(LineStringCoordinates coordinates) {
 
     map.addPolyline(new PolylineOptions()
-      .add(pointsArray)
+      .addAll(coordinates.toLatLngs())
       .color(Color.parseColor("#8a8acb"))
       .width(4));
   }
 
-  private void drawSimplify(List<Point> points) {
-
-    List<Point> before = new ArrayList<>();
-    for (int i = 0; i < points.size(); i++) {
-      before.add(points.get(i));
-    }
+  private void drawSimplify(LineStringCoordinates coordinates) {
 
-    List<Point> after = PolylineUtils.simplify(before, 0.001);
+    List<Point> after = PolylineUtils.simplify(coordinates.toPoints(), 0.001);
 
     LatLng[] result = new LatLng[after.size()];
     for (int i = 0; i < after.size(); i++) {
@@ -1,7 +1,6 @@
 package com.mapbox.mapboxandroiddemo.examples.query;
 
-import android.graphics.PointF;
-import android.graphics.RectF;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.v7.app.AppCompatActivity;
@@ -9,7 +8,9 @@ import android.util.Log;
 import android.widget.Toast;
 
 import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.FeatureSpatialIndex;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.maps.MapView;
@@ -18,13 +19,19 @@ import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 import com.mapbox.mapboxsdk.style.layers.FillLayer;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
-import java.net.URL;
-import java.util.List;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.fillOpacity;
 
 /**
- * Detect click events on a polygon that was added as a GeoJsonSource.
+ * Detect click events on a polygon that was added as a GeoJsonSource. The clicks are answered from a
+ * spatial index of the polygons instead of querying the rendered features.
  */
 public class ClickOnLayerActivity extends AppCompatActivity implements OnMapReadyCallback,
   MapboxMap.OnMapClickListener {
@@ -33,8 +40,15 @@ public class ClickOnLayerActivity extends AppCompatActivity implements OnMapRead
   private MapboxMap mapboxMap;
   private static final String geoJsonSourceId = "geoJsonData";
   private static final String geoJsonLayerId = "polygonFillLayer";
+  private static final String REGIONS_URL = "https://gist.githubusercontent"
+    + ".com/tobrun/cf0d689c8187d42ebe62757f6d0cf137/raw/4d8ac3c8333f1517df9d303"
+    + "d58f20f4a1d8841e8/regions.geojson";
+  // How far from a polygon, in pixels, a click still selects it
+  private static final float CLICK_RADIUS_PIXELS = 10;
   private FillLayer layer;
   private GeoJsonSource source;
+  private FeatureSpatialIndex regionIndex;
+  private LoadRegionsTask loadRegionsTask;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -70,31 +84,32 @@ public class ClickOnLayerActivity extends AppCompatActivity implements OnMapRead
 
   @Override
   public void onMapClick(@NonNull LatLng point) {
-    PointF pointf = mapboxMap.getProjection().toScreenLocation(point);
-    RectF rectF = new RectF(pointf.x - 10, pointf.y - 10, pointf.x + 10, pointf.y + 10);
-    List<Feature> featureList = mapboxMap.queryRenderedFeatures(rectF, geoJsonLayerId);
-    if (featureList.size() > 0) {
-      for (Feature feature : featureList) {
-        Log.d("Feature found with %1$s", feature.toJson());
-        Toast.makeText(ClickOnLayerActivity.this, R.string.click_on_polygon_toast,
-          Toast.LENGTH_SHORT).show();
-      }
+    if (regionIndex == null) {
+      // The polygons haven't been loaded yet
+      return;
+    }
+    double clickRadiusMeters = mapboxMap.getProjection().getMetersPerPixelAtLatitude(point.getLatitude())
+      * CLICK_RADIUS_PIXELS;
+    Feature feature = regionIndex.queryNearest(point.getLongitude(), point.getLatitude(), clickRadiusMeters);
+    if (feature != null) {
+      Log.d("Feature found with %1$s", feature.toJson());
+      Toast.makeText(ClickOnLayerActivity.this, R.string.click_on_polygon_toast,
+        Toast.LENGTH_SHORT).show();
     }
   }
 
   private void addGeoJsonSourceToMap() {
-    try {
-      // Load GeoJSONSource
-      source = new GeoJsonSource(geoJsonSourceId, new URL("https://gist.githubusercontent"
-        + ".com/tobrun/cf0d689c8187d42ebe62757f6d0cf137/raw/4d8ac3c8333f1517df9d303"
-        + "d58f20f4a1d8841e8/regions.geojson"));
-
-      // Add GeoJsonSource to map
-      mapboxMap.addSource(source);
+    // Add an empty GeoJsonSource to the map, the polygons are downloaded and indexed in the background
+    // and set on it once they're ready
+    source = new GeoJsonSource(geoJsonSourceId);
+    mapboxMap.addSource(source);
+    loadRegionsTask = new LoadRegionsTask(this);
+    loadRegionsTask.execute(REGIONS_URL);
+  }
 
-    } catch (Throwable throwable) {
-      Log.e("ClickOnLayerActivity", "Couldn't add GeoJsonSource to map", throwable);
-    }
+  private void setRegions(LoadRegionsTask.Regions regions) {
+    source.setGeoJson(regions.featureCollection);
+    regionIndex = regions.index;
   }
 
   @Override
@@ -133,6 +148,9 @@ public class ClickOnLayerActivity extends AppCompatActivity implements OnMapRead
     if (mapboxMap != null) {
       mapboxMap.removeOnMapClickListener(this);
     }
+    if (loadRegionsTask != null) {
+      loadRegionsTask.cancel(true);
+    }
     mapView.onDestroy();
   }
 
@@ -141,4 +159,62 @@ public class ClickOnLayerActivity extends AppCompatActivity implements OnMapRead
     super.onSaveInstanceState(outState);
     mapView.onSaveInstanceState(outState);
   }
-}
\ No newline at end of file
+
+  /**
+   * AsyncTask to download the polygons and build the spatial index which answers the clicks.
+   */
+  private static class LoadRegionsTask extends AsyncTask<String, Void, LoadRegionsTask.Regions> {
+
+    private final WeakReference<ClickOnLayerActivity> activityRef;
+    private final OkHttpClient client = new OkHttpClient();
+
+    LoadRegionsTask(ClickOnLayerActivity activity) {
+      this.activityRef = new WeakReference<>(activity);
+    }
+
+    @Override
+    protected Regions doInBackground(String... urls) {
+      Request request = new Request.Builder()
+        .url(urls[0])
+        .build();
+      try {
+        Response response = client.newCall(request).execute();
+        ResponseBody body = response.body();
+        try {
+          if (!response.isSuccessful() || body == null) {
+            throw new IOException("Unexpected response " + response.code() + " for " + request.url());
+          }
+          return new Regions(FeatureCollection.fromJson(body.string()));
+        } finally {
+          response.close();
+        }
+      } catch (IOException | RuntimeException exception) {
+        Log.e("ClickOnLayerActivity", "Couldn't load the polygons", exception);
+        return null;
+      }
+    }
+
+    @Override
+    protected void onPostExecute(Regions regions) {
+      super.onPostExecute(regions);
+      ClickOnLayerActivity activity = activityRef.get();
+      if (activity != null && regions != null) {
+        activity.setRegions(regions);
+      }
+    }
+
+    /**
+     * The downloaded polygons and their index.
+     */
+    static class Regions {
+
+      final FeatureCollection featureCollection;
+      final FeatureSpatialIndex index;
+
+      Regions(FeatureCollection featureCollection) {
+        this.featureCollection = featureCollection;
+        this.index = FeatureSpatialIndex.build(featureCollection);
+      }
+    }
+  }
+}
@@ -4,13 +4,16 @@ import android.graphics.Color;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
 import android.view.View;
 import android.view.animation.AlphaAnimation;
 import android.widget.Button;
 
+import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.geojson.Point;
 import com.mapbox.geojson.Polygon;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.FeatureCollectionCache;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -20,8 +23,6 @@ import com.mapbox.mapboxsdk.style.layers.LineLayer;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 import com.mapbox.turf.TurfJoins;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -96,7 +97,11 @@ public class IndoorMapActivity extends AppCompatActivity {
             }
           }
         });
-        indoorBuildingSource = new GeoJsonSource("indoor-building", loadJsonFromAsset("white_house_lvl_0.geojson"));
+        FeatureCollection groundLevel = loadLevel("white_house_lvl_0.geojson");
+        if (groundLevel == null) {
+          return;
+        }
+        indoorBuildingSource = new GeoJsonSource("indoor-building", groundLevel);
         mapboxMap.addSource(indoorBuildingSource);
 
         // Add the building layers since we know zoom levels in range
@@ -107,7 +112,7 @@ public class IndoorMapActivity extends AppCompatActivity {
     buttonSecondLevel.setOnClickListener(new View.OnClickListener() {
       @Override
       public void onClick(View view) {
-        indoorBuildingSource.setGeoJson(loadJsonFromAsset("white_house_lvl_1.geojson"));
+        showLevel("white_house_lvl_1.geojson");
       }
     });
 
@@ -115,7 +120,7 @@ public class IndoorMapActivity extends AppCompatActivity {
     buttonGroundLevel.setOnClickListener(new View.OnClickListener() {
       @Override
       public void onClick(View view) {
-        indoorBuildingSource.setGeoJson(loadJsonFromAsset("white_house_lvl_0.geojson"));
+        showLevel("white_house_lvl_0.geojson");
       }
     });
   }
@@ -162,6 +167,29 @@ public class IndoorMapActivity extends AppCompatActivity {
     mapView.onSaveInstanceState(outState);
   }
 
+  /**
+   * Replace the features of the building source with those of another level. The current level stays if
+   * the other one can't be loaded, or the building isn't on the map.
+   */
+  private void showLevel(String filename) {
+    if (indoorBuildingSource == null) {
+      return;
+    }
+    FeatureCollection level = loadLevel(filename);
+    if (level != null) {
+      indoorBuildingSource.setGeoJson(level);
+    }
+  }
+
+  @Nullable
+  private FeatureCollection loadLevel(String filename) {
+    FeatureCollection level = FeatureCollectionCache.loadFeatureCollection(this, filename);
+    if (level == null) {
+      Log.e("IndoorMapActivity", "Unable to load building level " + filename);
+    }
+    return level;
+  }
+
   private void hideLevelButton() {
     // When the user moves away from our bounding box region or zooms out far enough the floor level
     // buttons are faded out and hidden.
@@ -204,21 +232,4 @@ public class IndoorMapActivity extends AppCompatActivity {
         stop(16f, 0f))));
     map.addLayer(indoorBuildingLineLayer);
   }
-
-  private String loadJsonFromAsset(String filename) {
-    // Using this method to load in GeoJSON files from the assets folder.
-
-    try {
-      InputStream is = getAssets().open(filename);
-      int size = is.available();
-      byte[] buffer = new byte[size];
-      is.read(buffer);
-      is.close();
-      return new String(buffer, "UTF-8");
-
-    } catch (IOException ex) {
-      ex.printStackTrace();
-      return null;
-    }
-  }
 }
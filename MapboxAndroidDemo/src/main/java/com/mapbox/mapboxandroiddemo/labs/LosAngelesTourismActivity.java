@@ -4,12 +4,19 @@ import android.animation.ArgbEvaluator;
 import android.animation.ValueAnimator;
 import android.graphics.Color;
 import android.os.Bundle;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
 import android.view.View;
+import android.widget.Toast;
 
 import com.getbase.floatingactionbutton.FloatingActionButton;
+import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.FeatureCollectionCache;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonSourceLoader;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonTileFeeder;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonTiler;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -21,9 +28,6 @@ import com.mapbox.mapboxsdk.style.layers.Property;
 import com.mapbox.mapboxsdk.style.layers.PropertyFactory;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
-import java.io.IOException;
-import java.io.InputStream;
-
 import static com.mapbox.mapboxsdk.style.layers.Property.VISIBLE;
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.circleColor;
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.fillColor;
@@ -39,6 +43,8 @@ public class LosAngelesTourismActivity extends AppCompatActivity implements OnMa
   private ValueAnimator parkColorAnimator;
   private ValueAnimator hotelColorAnimator;
   private ValueAnimator attractionsColorAnimator;
+  private GeoJsonSourceLoader sourceLoader;
+  private GeoJsonTileFeeder hotelTileFeeder;
 
   @Override
   protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -51,6 +57,15 @@ public class LosAngelesTourismActivity extends AppCompatActivity implements OnMa
     // This contains the MapView in XML and needs to be called after the access token is configured.
     setContentView(R.layout.activity_lab_los_angeles_tourism);
 
+    sourceLoader = new GeoJsonSourceLoader(this);
+    sourceLoader.setOnLoadFailedListener(new GeoJsonSourceLoader.OnLoadFailedListener() {
+      @Override
+      public void onLoadFailed(@NonNull String filename) {
+        Toast.makeText(LosAngelesTourismActivity.this, getString(R.string.geojson_asset_load_error, filename),
+          Toast.LENGTH_SHORT).show();
+      }
+    });
+
     mapView = (MapView) findViewById(R.id.mapView);
     mapView.onCreate(savedInstanceState);
     mapView.getMapAsync(this);
@@ -61,9 +76,25 @@ public class LosAngelesTourismActivity extends AppCompatActivity implements OnMa
   public void onMapReady(MapboxMap mapboxMap) {
     this.mapboxMap = mapboxMap;
 
-    // Add the hotels source to the map
-    GeoJsonSource hotelSource = new GeoJsonSource("hotels", loadJsonFromAsset("la_hotels.geojson"));
+    // Add the hotels source to the map, its features are loaded and cut into tiles in the background,
+    // and only the tiles on screen are shown by the source. None of the layers read the OpenStreetMap
+    // properties of the hotels and attractions, so they aren't loaded at all
+    final GeoJsonSource hotelSource = new GeoJsonSource("hotels");
     mapboxMap.addSource(hotelSource);
+    sourceLoader.load("la_hotels.geojson", GeoJsonSourceLoader.PRIORITY_NORMAL,
+      new GeoJsonSourceLoader.Preparation<GeoJsonTiler>() {
+        @NonNull
+        @Override
+        public GeoJsonTiler prepare(@NonNull FeatureCollection featureCollection) {
+          return GeoJsonTiler.build(featureCollection);
+        }
+      }, new GeoJsonSourceLoader.OnPreparedListener<GeoJsonTiler>() {
+        @Override
+        public void onPrepared(@NonNull GeoJsonTiler tiler) {
+          hotelTileFeeder = new GeoJsonTileFeeder(tiler);
+          hotelTileFeeder.attach(LosAngelesTourismActivity.this.mapboxMap, hotelSource);
+        }
+      }, FeatureCollectionCache.NO_PROPERTIES);
 
     FillLayer hotelLayer = new FillLayer("hotels", "hotels").withProperties(
       fillColor(Color.parseColor("#5a9fcf")),
@@ -94,9 +125,11 @@ public class LosAngelesTourismActivity extends AppCompatActivity implements OnMa
 
     });
 
-    // Add the attractions source to the map
-    GeoJsonSource attractionsSource = new GeoJsonSource("attractions", loadJsonFromAsset("la_attractions.geojson"));
+    // Add the attractions source to the map, the small attractions file is loaded before the hotels
+    GeoJsonSource attractionsSource = new GeoJsonSource("attractions");
     mapboxMap.addSource(attractionsSource);
+    sourceLoader.loadInto(attractionsSource, "la_attractions.geojson", GeoJsonSourceLoader.PRIORITY_HIGH,
+      FeatureCollectionCache.NO_PROPERTIES);
 
     CircleLayer attractionsLayer = new CircleLayer("attractions", "attractions").withProperties(
       circleColor(Color.parseColor("#5a9fcf")),
@@ -246,6 +279,10 @@ public class LosAngelesTourismActivity extends AppCompatActivity implements OnMa
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    sourceLoader.cancel();
+    if (hotelTileFeeder != null) {
+      hotelTileFeeder.detach();
+    }
     mapView.onDestroy();
   }
 
@@ -254,20 +291,4 @@ public class LosAngelesTourismActivity extends AppCompatActivity implements OnMa
     super.onSaveInstanceState(outState);
     mapView.onSaveInstanceState(outState);
   }
-
-  private String loadJsonFromAsset(String filename) {
-    // Using this method to load in GeoJSON files from the assets folder.
-    try {
-      InputStream is = getAssets().open(filename);
-      int size = is.available();
-      byte[] buffer = new byte[size];
-      is.read(buffer);
-      is.close();
-      return new String(buffer, "UTF-8");
-
-    } catch (IOException ex) {
-      ex.printStackTrace();
-      return null;
-    }
-  }
 }
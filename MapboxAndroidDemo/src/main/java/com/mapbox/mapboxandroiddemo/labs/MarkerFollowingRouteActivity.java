@@ -8,11 +8,10 @@ import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
 import android.support.v7.app.AppCompatActivity;
-import android.text.TextUtils;
-import android.util.Log;
 import android.view.animation.LinearInterpolator;
 
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.LineStringCoordinates;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.annotations.Icon;
 import com.mapbox.mapboxsdk.annotations.IconFactory;
@@ -24,14 +23,6 @@ import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -39,8 +30,6 @@ import java.util.List;
  */
 public class MarkerFollowingRouteActivity extends AppCompatActivity {
 
-  private static final String TAG = "MarkerFollowingRoute";
-
   private MapView mapView;
   private MapboxMap map;
   private Handler handler;
@@ -133,49 +122,10 @@ public class MarkerFollowingRouteActivity extends AppCompatActivity {
     @Override
     protected List<LatLng> doInBackground(Void... voids) {
 
-      // Store the route LatLng points in a list so we can query them.
-      List<LatLng> points = new ArrayList<>();
-
-      try {
-        // Load GeoJSON file from the assets folder.
-        InputStream inputStream = getAssets().open("matched_route.geojson");
-        BufferedReader rd = new BufferedReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
-        StringBuilder sb = new StringBuilder();
-        int cp;
-        while ((cp = rd.read()) != -1) {
-          sb.append((char) cp);
-        }
-
-        inputStream.close();
-
-        // Parse JSON
-        JSONObject json = new JSONObject(sb.toString());
-        JSONArray features = json.getJSONArray("features");
-        JSONObject feature = features.getJSONObject(0);
-        JSONObject geometry = feature.getJSONObject("geometry");
-        if (geometry != null) {
-          String type = geometry.getString("type");
-
-          // Our GeoJSON only has one feature: a line string.
-          if (!TextUtils.isEmpty(type) && type.equalsIgnoreCase("LineString")) {
-
-            // Get the Coordinates and add them to the points list we created above.
-            JSONArray coords = geometry.getJSONArray("coordinates");
-            for (int lc = 0; lc < coords.length(); lc++) {
-              JSONArray coord = coords.getJSONArray(lc);
-              LatLng latLng = new LatLng(coord.getDouble(1), coord.getDouble(0));
-              points.add(latLng);
-            }
-          }
-        }
-      } catch (Exception exception) {
-        // If an error occurs loading in the GeoJSON file or adding the points to the list,
-        // we log the error.
-        Log.e(TAG, "Exception Loading GeoJSON: " + exception.toString());
-      }
-
-      // Lastly we return the list containing the route points.
-      return points;
+      // Load the route from the GeoJSON file in the assets folder. Our GeoJSON only has one
+      // feature: a line string. If an error occurs loading the file, it's logged and the list is empty.
+      return LineStringCoordinates.fromAsset(MarkerFollowingRouteActivity.this, "matched_route.geojson")
+        .toLatLngs();
     } // End doInBackground
 
     @Override
@@ -1,25 +1,13 @@
 package com.mapbox.mapboxandroiddemo.labs;
 
-import android.animation.Animator;
-import android.animation.AnimatorSet;
-import android.animation.TypeEvaluator;
-import android.animation.ValueAnimator;
-import android.annotation.SuppressLint;
-import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Paint;
 import android.graphics.PointF;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
 import android.os.AsyncTask;
 import android.os.Bundle;
-import android.os.Handler;
 import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
-import android.support.v4.view.animation.FastOutSlowInInterpolator;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.CardView;
 import android.support.v7.widget.DefaultItemAnimator;
@@ -38,13 +26,25 @@ import com.mapbox.geojson.Feature;
 import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.BitmapPool;
+import com.mapbox.mapboxandroiddemo.utils.CameraAnimator;
+import com.mapbox.mapboxandroiddemo.utils.CircleBitmapRenderer;
+import com.mapbox.mapboxandroiddemo.utils.DiskCache;
+import com.mapbox.mapboxandroiddemo.utils.FrameValueAnimator;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonAssetLoader;
+import com.mapbox.mapboxandroiddemo.utils.ImageFetchPipeline;
+import com.mapbox.mapboxandroiddemo.utils.IndexedFeatureStore;
+import com.mapbox.mapboxandroiddemo.utils.MapillaryImageQuery;
+import com.mapbox.mapboxandroiddemo.utils.ScreenHitGrid;
+import com.mapbox.mapboxandroiddemo.utils.SpriteAtlas;
+import com.mapbox.mapboxandroiddemo.utils.TileCacheProxy;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.camera.CameraPosition;
-import com.mapbox.mapboxsdk.camera.CameraUpdateFactory;
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
+import com.mapbox.mapboxsdk.maps.Projection;
 import com.mapbox.mapboxsdk.style.expressions.Expression;
 import com.mapbox.mapboxsdk.style.layers.CircleLayer;
 import com.mapbox.mapboxsdk.style.layers.Layer;
@@ -58,18 +58,19 @@ import com.mapbox.mapboxsdk.style.sources.TileSet;
 import com.mapbox.mapboxsdk.style.sources.VectorSource;
 import com.squareup.picasso.Picasso;
 
-import java.io.InputStream;
+import java.io.File;
+import java.io.IOException;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
 import timber.log.Timber;
 
 import static android.support.v7.widget.RecyclerView.SCROLL_STATE_IDLE;
@@ -81,7 +82,6 @@ import static com.mapbox.mapboxsdk.style.expressions.Expression.gte;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.interpolate;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.literal;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.lt;
-import static com.mapbox.mapboxsdk.style.expressions.Expression.match;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.stop;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.toNumber;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.zoom;
@@ -106,15 +106,16 @@ import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.textSize;
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.visibility;
 
 public class SymbolLayerMapillaryActivity extends AppCompatActivity implements OnMapReadyCallback,
-  MapboxMap.OnMapClickListener {
+  MapboxMap.OnMapClickListener, MapboxMap.OnCameraMoveStartedListener, MapboxMap.OnCameraIdleListener {
   private static final String SOURCE_ID = "mapbox.poi";
+  private static final String STATE_SOURCE_ID = "mapbox.poi.state";
   private static final String MAKI_LAYER_ID = "mapbox.poi.maki";
+  private static final String SELECTED_MAKI_LAYER_ID = "mapbox.poi.maki.selected";
   private static final String LOADING_LAYER_ID = "mapbox.poi.loading";
   private static final String CALLOUT_LAYER_ID = "mapbox.poi.callout";
 
   private static final String PROPERTY_SELECTED = "selected";
   private static final String PROPERTY_LOADING = "loading";
-  private static final String PROPERTY_LOADING_PROGRESS = "loading_progress";
   private static final String PROPERTY_TITLE = "title";
   private static final String PROPERTY_FAVOURITE = "favourite";
   private static final String PROPERTY_DESCRIPTION = "description";
@@ -123,8 +124,21 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
 
   private static final long CAMERA_ANIMATION_TIME = 1950;
   private static final float LOADING_CIRCLE_RADIUS = 60;
-  private static final int LOADING_PROGRESS_STEPS = 25; //number of steps in a progress animation
-  private static final int LOADING_STEP_DURATION = 50; //duration between each step
+  private static final long LOADING_CIRCLE_EASING_TIME = 150;
+  private static final int CALLOUT_ATLAS_PAGE_SIZE = 1024;
+  private static final int THUMBNAIL_POOL_BYTES = 1024 * 1024;
+  private static final int HIT_GRID_CELL_SIZE_DP = 64;
+  private static final int ICON_HIT_SIZE_DP = 24;
+  // The icon offset of the callouts, which the renderer scales by the screen density
+  private static final float CALLOUT_OFFSET_X_DP = -20.0f;
+  private static final float CALLOUT_OFFSET_Y_DP = -10.0f;
+  private static final long QUERY_CACHE_BYTES = 1024 * 1024;
+  private static final long QUERY_CACHE_TTL = TimeUnit.DAYS.toMillis(1);
+  private static final long THUMBNAIL_CACHE_BYTES = 10 * 1024 * 1024;
+  private static final long THUMBNAIL_CACHE_TTL = TimeUnit.DAYS.toMillis(7);
+  private static final long TILE_CACHE_BYTES = 20 * 1024 * 1024;
+  private static final long TILE_CACHE_TTL = TimeUnit.DAYS.toMillis(7);
+  private static final int TILE_PREFETCH_RADIUS = 1;
 
   private MapView mapView;
   private MapboxMap mapboxMap;
@@ -132,10 +146,36 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
 
   private GeoJsonSource source;
   private FeatureCollection featureCollection;
-  private HashMap<String, View> viewMap;
-  private AnimatorSet animatorSet;
-
+  private IndexedFeatureStore poiStore;
+  private int selectedIndex = -1;
+  private SpriteAtlas calloutAtlas;
+  // Per callout sprite, the left, top, right and bottom of its text relative to the top left corner of the
+  // callout, to tell clicks on the text from clicks on the icon
+  private int[] calloutTextRects;
+  // The symbols under each point of the screen, filled when the camera comes to rest
+  private ScreenHitGrid hitGrid;
+  private boolean hitGridValid;
+  private float iconHitSize;
+  private float calloutOffsetX;
+  private float calloutOffsetY;
+  private LatLng[] poiPositions;
+  // Per feature, the x and y of its symbol on screen when the hit grid was filled
+  private float[] poiScreenPoints;
+  // Reused to redraw a single callout in the atlas
+  private View calloutView;
+  private CameraAnimator cameraAnimator;
+  // Grows the loading circle with the progress, only one feature loads at a time
+  private FrameValueAnimator loadingCircleAnimator;
+
+  private MapillaryImageQuery mapillaryImageQuery;
+  private TileCacheProxy tileCacheProxy;
+  private ImageFetchPipeline imageFetchPipeline;
+  private final BitmapPool thumbnailPool = new BitmapPool(THUMBNAIL_POOL_BYTES);
+  private final CircleBitmapRenderer circleRenderer = new CircleBitmapRenderer(thumbnailPool);
+  // The Mapillary pictures currently added to the map as images
+  private final List<String> mapillaryImageIds = new ArrayList<>();
   private LoadMapillaryDataTask loadMapillaryDataTask;
+  private ImageFetchPipeline.Fetch mapillaryImageFetch;
 
   @ActivityStep
   private int currentStep;
@@ -169,6 +209,32 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
     setContentView(R.layout.activity_symbol_layer_mapillary);
 
     recyclerView = findViewById(R.id.rv_on_top_of_map);
+    float density = getResources().getDisplayMetrics().density;
+    hitGrid = new ScreenHitGrid((int) (HIT_GRID_CELL_SIZE_DP * density));
+    iconHitSize = ICON_HIT_SIZE_DP * density;
+    calloutOffsetX = CALLOUT_OFFSET_X_DP * density;
+    calloutOffsetY = CALLOUT_OFFSET_Y_DP * density;
+    loadingCircleAnimator = new FrameValueAnimator(LOADING_CIRCLE_EASING_TIME, new FrameValueAnimator.Listener() {
+      @Override
+      public void onValueChanged(float value) {
+        Layer loadingLayer = mapboxMap != null ? mapboxMap.getLayer(LOADING_LAYER_ID) : null;
+        if (loadingLayer != null) {
+          // A paint property of the layer, the loading feature in the state source doesn't change
+          loadingLayer.setProperties(circleRadius(value * LOADING_CIRCLE_RADIUS));
+        }
+      }
+    });
+    // Pictures near a point of interest which was visited before are loaded without any requests
+    OkHttpClient httpClient = new OkHttpClient();
+    mapillaryImageQuery = new MapillaryImageQuery(httpClient, MapillaryImageQuery.DEFAULT_BASE_URL,
+      new DiskCache(new File(getCacheDir(), "mapillary_queries"), QUERY_CACHE_BYTES, QUERY_CACHE_TTL));
+    // Sequence tiles of areas which were browsed before are served from disk
+    tileCacheProxy = new TileCacheProxy(httpClient, MapillaryTiles.URL_TILESET,
+      new DiskCache(new File(getCacheDir(), "mapillary_tiles"), TILE_CACHE_BYTES, TILE_CACHE_TTL),
+      MapillaryTiles.MAX_ZOOM);
+    imageFetchPipeline = new ImageFetchPipeline(Picasso.with(getApplicationContext()),
+      LoadMapillaryDataTask.IMAGE_SIZE,
+      new DiskCache(new File(getCacheDir(), "mapillary_thumbnails"), THUMBNAIL_CACHE_BYTES, THUMBNAIL_CACHE_TTL));
 
     // Initialize the map view
     mapView = findViewById(R.id.mapView);
@@ -182,23 +248,88 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
     mapboxMap.getUiSettings().setCompassEnabled(false);
     mapboxMap.getUiSettings().setLogoEnabled(false);
     mapboxMap.getUiSettings().setAttributionEnabled(false);
+    cameraAnimator = new CameraAnimator(mapboxMap);
     new LoadPoiDataTask(this).execute();
     mapboxMap.addOnMapClickListener(this);
+    mapboxMap.addOnCameraMoveStartedListener(this);
+    mapboxMap.addOnCameraIdleListener(this);
   }
 
   @Override
   public void onMapClick(@NonNull LatLng point) {
+    if (poiStore == null) {
+      return;
+    }
+    if (!hitGridValid) {
+      // Clicked while the camera moves, the grid is filled for the current position
+      updateHitGrid();
+    }
     PointF screenPoint = mapboxMap.getProjection().toScreenLocation(point);
-    List<Feature> features = mapboxMap.queryRenderedFeatures(screenPoint, CALLOUT_LAYER_ID);
-    if (!features.isEmpty()) {
-      // we received a click event on the callout layer
-      Feature feature = features.get(0);
-      PointF symbolScreenPoint = mapboxMap.getProjection().toScreenLocation(convertToLatLng(feature));
-      handleClickCallout(feature, screenPoint, symbolScreenPoint);
-    } else {
-      // we didn't find a click event on callout layer, try clicking maki layer
-      handleClickIcon(screenPoint);
+    int hit = hitGrid.find(screenPoint.x, screenPoint.y);
+    if (hit >= poiStore.size()) {
+      // we received a click event on the callout of the selected feature
+      handleClickCallout(hit - poiStore.size(), screenPoint);
+    } else if (hit >= 0) {
+      // no callout was clicked, but a maki icon was
+      handleClickIcon(hit);
+    }
+  }
+
+  @Override
+  public void onCameraMoveStarted(int reason) {
+    hitGridValid = false;
+  }
+
+  @Override
+  public void onCameraIdle() {
+    if (cameraAnimator.isRunning()) {
+      // Every frame of an animation ends in an idle camera, the grid is filled once the animation ends
+      hitGridValid = false;
+      return;
+    }
+    updateHitGrid();
+    if (mapboxMap.getSource(MapillaryTiles.ID_SOURCE) != null) {
+      CameraPosition cameraPosition = mapboxMap.getCameraPosition();
+      tileCacheProxy.prefetch(cameraPosition.target.getLatitude(), cameraPosition.target.getLongitude(),
+        cameraPosition.zoom, TILE_PREFETCH_RADIUS);
+    }
+  }
+
+  /**
+   * Put the maki icon of every feature in the hit grid at its position on screen, with the callout of the
+   * selected feature on top.
+   */
+  private void updateHitGrid() {
+    if (poiStore == null) {
+      return;
+    }
+    hitGrid.reset(mapView.getWidth(), mapView.getHeight());
+    Projection projection = mapboxMap.getProjection();
+    float halfIconSize = iconHitSize / 2;
+    for (int i = 0; i < poiStore.size(); i++) {
+      PointF point = projection.toScreenLocation(poiPositions[i]);
+      poiScreenPoints[i * 2] = point.x;
+      poiScreenPoints[i * 2 + 1] = point.y;
+      hitGrid.add(i, point.x - halfIconSize, point.y - halfIconSize, point.x + halfIconSize,
+        point.y + halfIconSize);
+    }
+
+    int sprite = getCalloutSprite(selectedIndex);
+    if (sprite >= 0) {
+      // the callout is anchored at its bottom left corner, shifted by its icon offset
+      float left = poiScreenPoints[selectedIndex * 2] + calloutOffsetX;
+      float bottom = poiScreenPoints[selectedIndex * 2 + 1] + calloutOffsetY;
+      hitGrid.add(poiStore.size() + selectedIndex, left, bottom - calloutAtlas.getHeight(sprite),
+        left + calloutAtlas.getWidth(sprite), bottom);
+    }
+    hitGridValid = true;
+  }
+
+  private int getCalloutSprite(int index) {
+    if (index < 0 || calloutAtlas == null) {
+      return -1;
     }
+    return calloutAtlas.indexOf(poiStore.get(index).getStringProperty(PROPERTY_TITLE));
   }
 
   public void setupData(final FeatureCollection collection) {
@@ -216,14 +347,30 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
     setupMapillaryTiles();
   }
 
+  /**
+   * Setup a source with all features, which doesn't change afterwards, and a source with only the features
+   * which have a state to show, like the selected feature.
+   */
   private void setupSource() {
     source = new GeoJsonSource(SOURCE_ID, featureCollection);
     mapboxMap.addSource(source);
+    GeoJsonSource stateSource = new GeoJsonSource(STATE_SOURCE_ID);
+    mapboxMap.addSource(stateSource);
+    poiStore = new IndexedFeatureStore(featureCollection, PROPERTY_TITLE, stateSource);
+    poiPositions = new LatLng[poiStore.size()];
+    for (int i = 0; i < poiPositions.length; i++) {
+      poiPositions[i] = convertToLatLng(poiStore.get(i));
+    }
+    poiScreenPoints = new float[poiPositions.length * 2];
+    hitGridValid = false;
   }
 
+  /**
+   * Show the changed state of features, only the features with a state are sent to the map again.
+   */
   private void refreshSource() {
-    if (source != null && featureCollection != null) {
-      source.setGeoJson(featureCollection);
+    if (poiStore != null) {
+      poiStore.commit();
     }
   }
 
@@ -239,39 +386,33 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
         iconImage("{poi}-15"),
 
         /* allows show all icons */
-        iconAllowOverlap(true),
-
-        /* when feature is in selected state, grow icon */
-        iconSize(match(get(PROPERTY_SELECTED), literal(1.0f),
-          stop(true, 1.5f))))
+        iconAllowOverlap(true))
     );
+
+    /* when feature is in selected state, grow icon by drawing it again from the state source */
+    mapboxMap.addLayer(new SymbolLayer(SELECTED_MAKI_LAYER_ID, STATE_SOURCE_ID)
+      .withProperties(
+        iconImage("{poi}-15"),
+        iconAllowOverlap(true),
+        iconSize(1.5f))
+      .withFilter(eq((get(PROPERTY_SELECTED)), literal(true))));
   }
 
   /**
    * Setup layer indicating that there is an ongoing progress.
    */
   private void setupLoadingLayer() {
-    mapboxMap.addLayerBelow(new CircleLayer(LOADING_LAYER_ID, SOURCE_ID)
+    mapboxMap.addLayerBelow(new CircleLayer(LOADING_LAYER_ID, STATE_SOURCE_ID)
         .withProperties(
-          circleRadius(interpolate(exponential(1), get(PROPERTY_LOADING_PROGRESS), getLoadingAnimationStops())),
+          circleRadius(0f),
           circleColor(Color.GRAY),
           circleOpacity(0.6f)
         )
-        /*.withFilter(eq(PROPERTY_LOADING, true)),*/
-        .withFilter(eq((get(PROPERTY_LOADING)), literal(0))),
+        .withFilter(eq((get(PROPERTY_LOADING)), literal(true))),
       MAKI_LAYER_ID
     );
   }
 
-  private Expression.Stop[] getLoadingAnimationStops() {
-    List<Expression.Stop> stops = new ArrayList<>();
-    for (int i = 0; i < LOADING_PROGRESS_STEPS; i++) {
-      stops.add(stop(i, LOADING_CIRCLE_RADIUS * i / LOADING_PROGRESS_STEPS));
-    }
-
-    return stops.toArray(new Expression.Stop[LOADING_PROGRESS_STEPS]);
-  }
-
   /**
    * Setup a layer with Android SDK call-outs
    * <p>
@@ -279,7 +420,7 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
    * </p>
    */
   private void setupCalloutLayer() {
-    mapboxMap.addLayer(new SymbolLayer(CALLOUT_LAYER_ID, SOURCE_ID)
+    mapboxMap.addLayer(new SymbolLayer(CALLOUT_LAYER_ID, STATE_SOURCE_ID)
       .withProperties(
         /* show image with id title based on the value of the title feature property */
         iconImage("{title}"),
@@ -288,7 +429,7 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
         iconAnchor("bottom-left"),
 
         /* offset icon slightly to match bubble layout */
-        iconOffset(new Float[] {-20.0f, -10.0f})
+        iconOffset(new Float[] {CALLOUT_OFFSET_X_DP, CALLOUT_OFFSET_Y_DP})
       )
 
       /* add a filter to show only when selected feature property is true */
@@ -326,48 +467,48 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
   }
 
   private void setupMapillaryTiles() {
-    mapboxMap.addSource(MapillaryTiles.createSource());
+    String tileUrl;
+    try {
+      tileUrl = tileCacheProxy.start();
+    } catch (IOException exception) {
+      Timber.w(exception, "Unable to start the tile cache, loading tiles directly");
+      tileUrl = MapillaryTiles.URL_TILESET;
+    }
+    mapboxMap.addSource(MapillaryTiles.createSource(tileUrl));
     mapboxMap.addLayerBelow(MapillaryTiles.createLineLayer(), LOADING_LAYER_ID);
   }
 
   /**
    * This method handles click events for callout symbols.
    * <p>
-   * It creates a hit rectangle based on the the textView, offsets that rectangle to the location
-   * of the symbol on screen and hit tests that with the screen point.
+   * It takes the hit rectangle of the text measured when the callout was drawn, relative to the top left
+   * corner of the callout on screen, and hit tests that with the screen point.
    * </p>
    *
-   * @param feature           the feature that was clicked
-   * @param screenPoint       the point on screen clicked
-   * @param symbolScreenPoint the point of the symbol on screen
+   * @param index       the index of the feature whose callout was clicked
+   * @param screenPoint the point on screen clicked
    */
-  private void handleClickCallout(Feature feature, PointF screenPoint, PointF symbolScreenPoint) {
-    View view = viewMap.get(feature.getStringProperty(PROPERTY_TITLE));
-    View textContainer = view.findViewById(R.id.text_container);
-
-    // create hitbox for textView
-    Rect hitRectText = new Rect();
-    textContainer.getHitRect(hitRectText);
-
-    // move hitbox to location of symbol
-    hitRectText.offset((int) symbolScreenPoint.x, (int) symbolScreenPoint.y);
+  private void handleClickCallout(int index, PointF screenPoint) {
+    int sprite = getCalloutSprite(index);
+    if (sprite < 0) {
+      return;
+    }
 
-    // offset vertically to match anchor behaviour
-    hitRectText.offset(0, -view.getMeasuredHeight());
+    // move the clicked point into the callout, which is anchored at its bottom left corner shifted by its
+    // icon offset
+    float x = screenPoint.x - poiScreenPoints[index * 2] - calloutOffsetX;
+    float y = screenPoint.y - poiScreenPoints[index * 2 + 1] - calloutOffsetY + calloutAtlas.getHeight(sprite);
 
     // hit test if clicked point is in textview hitbox
-    if (hitRectText.contains((int) screenPoint.x, (int) screenPoint.y)) {
+    int offset = sprite * 4;
+    if (x >= calloutTextRects[offset] && y >= calloutTextRects[offset + 1]
+      && x < calloutTextRects[offset + 2] && y < calloutTextRects[offset + 3]) {
       // user clicked on text
-      String callout = feature.getStringProperty("call-out");
+      String callout = poiStore.get(index).getStringProperty("call-out");
       Toast.makeText(this, callout, Toast.LENGTH_LONG).show();
     } else {
       // user clicked on icon
-      List<Feature> featureList = featureCollection.features();
-      for (int i = 0; i < featureList.size(); i++) {
-        if (featureList.get(i).getStringProperty(PROPERTY_TITLE).equals(feature.getStringProperty(PROPERTY_TITLE))) {
-          toggleFavourite(i);
-        }
-      }
+      toggleFavourite(index);
     }
   }
 
@@ -377,19 +518,10 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
    * When a maki symbol is clicked, we moved that feature to the selected state.
    * </p>
    *
-   * @param screenPoint the point on screen clicked
+   * @param index the index of the feature that was clicked
    */
-  private void handleClickIcon(PointF screenPoint) {
-    List<Feature> features = mapboxMap.queryRenderedFeatures(screenPoint, MAKI_LAYER_ID);
-    if (!features.isEmpty()) {
-      String title = features.get(0).getStringProperty(PROPERTY_TITLE);
-      List<Feature> featureList = featureCollection.features();
-      for (int i = 0; i < featureList.size(); i++) {
-        if (featureList.get(i).getStringProperty(PROPERTY_TITLE).equals(title)) {
-          setSelected(i, true);
-        }
-      }
-    }
+  private void handleClickIcon(int index) {
+    setSelected(index, true);
   }
 
   /**
@@ -405,11 +537,10 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
 
     deselectAll(false);
 
-    Feature feature = featureCollection.features().get(index);
-    selectFeature(feature);
-    animateCameraToSelection(feature);
+    selectFeature(index);
+    animateCameraToSelection(poiStore.get(index));
     refreshSource();
-    loadMapillaryData(feature);
+    loadMapillaryData(index);
 
     if (withScroll) {
       recyclerView.scrollToPosition(index);
@@ -417,11 +548,14 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
   }
 
   /**
-   * Deselects the state of all the features
+   * Deselects the selected feature, if there is one
    */
   private void deselectAll(boolean hideRecycler) {
-    for (Feature feature : featureCollection.features()) {
-      feature.properties().addProperty(PROPERTY_SELECTED, false);
+    if (selectedIndex >= 0) {
+      poiStore.setBooleanProperty(selectedIndex, PROPERTY_SELECTED, false);
+      poiStore.setActive(selectedIndex, false);
+      selectedIndex = -1;
+      hitGridValid = false;
     }
 
     if (hideRecycler) {
@@ -432,22 +566,17 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
   /**
    * Selects the state of a feature
    *
-   * @param feature the feature to be selected.
+   * @param index the index of the feature to be selected.
    */
-  private void selectFeature(Feature feature) {
-    feature.properties().addProperty(PROPERTY_SELECTED, true);
+  private void selectFeature(int index) {
+    poiStore.setActive(index, true);
+    poiStore.setBooleanProperty(index, PROPERTY_SELECTED, true);
+    selectedIndex = index;
+    hitGridValid = false;
   }
 
   private Feature getSelectedFeature() {
-    if (featureCollection != null) {
-      for (Feature feature : featureCollection.features()) {
-        if (feature.getBooleanProperty(PROPERTY_SELECTED)) {
-          return feature;
-        }
-      }
-    }
-
-    return null;
+    return selectedIndex >= 0 ? poiStore.get(selectedIndex) : null;
   }
 
   /**
@@ -456,20 +585,23 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
    * @param feature the feature to animate to
    */
   private void animateCameraToSelection(Feature feature, double newZoom) {
-    CameraPosition cameraPosition = mapboxMap.getCameraPosition();
-
-    if (animatorSet != null) {
-      animatorSet.cancel();
-    }
+    CameraPosition cameraPosition = new CameraPosition.Builder()
+      .target(convertToLatLng(feature))
+      .zoom(newZoom)
+      .bearing(feature.getNumberProperty("bearing").doubleValue())
+      .tilt(feature.getNumberProperty("tilt").doubleValue())
+      .build();
+    cameraAnimator.animateTo(cameraPosition, CAMERA_ANIMATION_TIME, new CameraAnimator.Listener() {
+      @Override
+      public void onCameraFrame(@NonNull CameraPosition position) {
+        // only the end of the animation matters here
+      }
 
-    animatorSet = new AnimatorSet();
-    animatorSet.playTogether(
-      createLatLngAnimator(cameraPosition.target, convertToLatLng(feature)),
-      createZoomAnimator(cameraPosition.zoom, newZoom),
-      createBearingAnimator(cameraPosition.bearing, feature.getNumberProperty("bearing").doubleValue()),
-      createTiltAnimator(cameraPosition.tilt, feature.getNumberProperty("tilt").doubleValue())
-    );
-    animatorSet.start();
+      @Override
+      public void onCameraAnimationFinished() {
+        updateHitGrid();
+      }
+    });
   }
 
   private void animateCameraToSelection(Feature feature) {
@@ -477,16 +609,38 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
     animateCameraToSelection(feature, zoom);
   }
 
-  private void loadMapillaryData(Feature feature) {
-    if (loadMapillaryDataTask != null) {
-      loadMapillaryDataTask.cancel(true);
-    }
+  private void loadMapillaryData(int index) {
+    cancelMapillaryData();
 
     loadMapillaryDataTask = new LoadMapillaryDataTask(this,
-      mapboxMap, Picasso.with(getApplicationContext()), new Handler(), feature);
+      mapboxMap, imageFetchPipeline, index);
     loadMapillaryDataTask.execute(50);
   }
 
+  /**
+   * Removes the pictures of the previous selection from the map, once no feature shows them anymore.
+   */
+  private void removeMapillaryImages() {
+    for (String imageId : mapillaryImageIds) {
+      mapboxMap.removeImage(imageId);
+    }
+    mapillaryImageIds.clear();
+  }
+
+  /**
+   * Stops loading the Mapillary data of the previous selection, including the photos still being fetched.
+   */
+  private void cancelMapillaryData() {
+    if (loadMapillaryDataTask != null) {
+      loadMapillaryDataTask.cancelLoading();
+      loadMapillaryDataTask = null;
+    }
+    if (mapillaryImageFetch != null) {
+      mapillaryImageFetch.cancel();
+      mapillaryImageFetch = null;
+    }
+  }
+
   /**
    * Set the favourite state of a feature based on the index.
    *
@@ -496,26 +650,42 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
     Feature feature = featureCollection.features().get(index);
     String title = feature.getStringProperty(PROPERTY_TITLE);
     boolean currentState = feature.getBooleanProperty(PROPERTY_FAVOURITE);
-    feature.properties().addProperty(PROPERTY_FAVOURITE, !currentState);
-    View view = viewMap.get(title);
+    poiStore.setBooleanProperty(index, PROPERTY_FAVOURITE, !currentState);
 
-    ImageView imageView = (ImageView) view.findViewById(R.id.logoView);
-    imageView.setImageResource(currentState ? R.drawable.ic_favorite : R.drawable.ic_favorite_border);
-    Bitmap bitmap = SymbolGenerator.generate(view);
-    mapboxMap.addImage(title, bitmap);
+    if (calloutAtlas != null) {
+      if (calloutView == null) {
+        calloutView = LayoutInflater.from(this).inflate(R.layout.layout_callout, null);
+      }
+      bindCalloutView(calloutView, feature);
+      // only the region of this callout is redrawn
+      calloutAtlas.put(title, calloutView);
+      calloutAtlas.addToMap(mapboxMap, title);
+    }
     refreshSource();
   }
 
   /**
-   * Invoked when the bitmaps have been generated from a view.
+   * Invoked when the callouts have been drawn into the atlas.
    */
-  public void setImageGenResults(HashMap<String, View> viewMap, HashMap<String, Bitmap> imageMap) {
+  public void setCalloutAtlas(SpriteAtlas calloutAtlas, int[] calloutTextRects) {
     if (mapboxMap != null) {
-      // calling addImages is faster as separate addImage calls for each bitmap.
-      mapboxMap.addImages(imageMap);
+      calloutAtlas.addAllToMap(mapboxMap);
     }
-    // need to store reference to views to be able to use them as hitboxes for click events.
-    this.viewMap = viewMap;
+    this.calloutAtlas = calloutAtlas;
+    this.calloutTextRects = calloutTextRects;
+    hitGridValid = false;
+  }
+
+  private static void bindCalloutView(View view, Feature feature) {
+    TextView titleTv = (TextView) view.findViewById(R.id.title);
+    titleTv.setText(feature.getStringProperty(PROPERTY_TITLE));
+
+    TextView styleTv = (TextView) view.findViewById(R.id.style);
+    styleTv.setText(feature.getStringProperty(PROPERTY_STYLE));
+
+    boolean favourite = feature.getBooleanProperty(PROPERTY_FAVOURITE);
+    ImageView imageView = (ImageView) view.findViewById(R.id.logoView);
+    imageView.setImageResource(favourite ? R.drawable.ic_favorite : R.drawable.ic_favorite_border);
   }
 
   private void setActivityStep(@ActivityStep int activityStep) {
@@ -547,10 +717,7 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
   @Override
   protected void onStop() {
     super.onStop();
-
-    if (loadMapillaryDataTask != null) {
-      loadMapillaryDataTask.cancel(true);
-    }
+    cancelMapillaryData();
     mapView.onStop();
   }
 
@@ -571,16 +738,25 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
     super.onDestroy();
     if (mapboxMap != null) {
       mapboxMap.removeOnMapClickListener(this);
+      mapboxMap.removeOnCameraMoveStartedListener(this);
+      mapboxMap.removeOnCameraIdleListener(this);
+    }
+    if (calloutAtlas != null) {
+      calloutAtlas.recycle();
     }
+    loadingCircleAnimator.cancel();
+    if (cameraAnimator != null) {
+      cameraAnimator.cancel();
+    }
+    thumbnailPool.clear();
+    tileCacheProxy.stop();
     mapView.onDestroy();
   }
 
   @Override
   public void onBackPressed() {
     if (currentStep == STEP_LOADING || currentStep == STEP_READY) {
-      if (loadMapillaryDataTask != null) {
-        loadMapillaryDataTask.cancel(true);
-      }
+      cancelMapillaryData();
       setActivityStep(STEP_INITIAL);
       deselectAll(true);
       refreshSource();
@@ -594,75 +770,6 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
     return new LatLng(symbolPoint.latitude(), symbolPoint.longitude());
   }
 
-  private Animator createLatLngAnimator(LatLng currentPosition, LatLng targetPosition) {
-    ValueAnimator latLngAnimator = ValueAnimator.ofObject(new LatLngEvaluator(), currentPosition, targetPosition);
-    latLngAnimator.setDuration(CAMERA_ANIMATION_TIME);
-    latLngAnimator.setInterpolator(new FastOutSlowInInterpolator());
-    latLngAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-      @Override
-      public void onAnimationUpdate(ValueAnimator animation) {
-        mapboxMap.moveCamera(CameraUpdateFactory.newLatLng((LatLng) animation.getAnimatedValue()));
-      }
-    });
-    return latLngAnimator;
-  }
-
-  private Animator createZoomAnimator(double currentZoom, double targetZoom) {
-    ValueAnimator zoomAnimator = ValueAnimator.ofFloat((float) currentZoom, (float) targetZoom);
-    zoomAnimator.setDuration(CAMERA_ANIMATION_TIME);
-    zoomAnimator.setInterpolator(new FastOutSlowInInterpolator());
-    zoomAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-      @Override
-      public void onAnimationUpdate(ValueAnimator animation) {
-        mapboxMap.moveCamera(CameraUpdateFactory.zoomTo((Float) animation.getAnimatedValue()));
-      }
-    });
-    return zoomAnimator;
-  }
-
-  private Animator createBearingAnimator(double currentBearing, double targetBearing) {
-    ValueAnimator bearingAnimator = ValueAnimator.ofFloat((float) currentBearing, (float) targetBearing);
-    bearingAnimator.setDuration(CAMERA_ANIMATION_TIME);
-    bearingAnimator.setInterpolator(new FastOutSlowInInterpolator());
-    bearingAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-      @Override
-      public void onAnimationUpdate(ValueAnimator animation) {
-        mapboxMap.moveCamera(CameraUpdateFactory.bearingTo((Float) animation.getAnimatedValue()));
-      }
-    });
-    return bearingAnimator;
-  }
-
-  private Animator createTiltAnimator(double currentTilt, double targetTilt) {
-    ValueAnimator tiltAnimator = ValueAnimator.ofFloat((float) currentTilt, (float) targetTilt);
-    tiltAnimator.setDuration(CAMERA_ANIMATION_TIME);
-    tiltAnimator.setInterpolator(new FastOutSlowInInterpolator());
-    tiltAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-      @Override
-      public void onAnimationUpdate(ValueAnimator animation) {
-        mapboxMap.moveCamera(CameraUpdateFactory.tiltTo((Float) animation.getAnimatedValue()));
-      }
-    });
-    return tiltAnimator;
-  }
-
-  /**
-   * Helper class to evaluate LatLng objects with a ValueAnimator
-   */
-  private static class LatLngEvaluator implements TypeEvaluator<LatLng> {
-
-    private final LatLng latLng = new LatLng();
-
-    @Override
-    public LatLng evaluate(float fraction, LatLng startValue, LatLng endValue) {
-      latLng.setLatitude(startValue.getLatitude()
-        + ((endValue.getLatitude() - startValue.getLatitude()) * fraction));
-      latLng.setLongitude(startValue.getLongitude()
-        + ((endValue.getLongitude() - startValue.getLongitude()) * fraction));
-      return latLng;
-    }
-  }
-
   /**
    * AsyncTask to load data from the assets folder.
    */
@@ -682,8 +789,7 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
         return null;
       }
 
-      String geoJson = loadGeoJsonFromAsset(activity, "sf_poi.geojson");
-      return FeatureCollection.fromJson(geoJson);
+      return GeoJsonAssetLoader.loadFeatureCollection(activity, "sf_poi.geojson");
     }
 
     @Override
@@ -694,101 +800,88 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
         return;
       }
       activity.setupData(featureCollection);
-      new GenerateViewIconTask(activity).execute(featureCollection);
-    }
-
-    static String loadGeoJsonFromAsset(Context context, String filename) {
-      try {
-        // Load GeoJSON file from local asset folder
-        InputStream is = context.getAssets().open(filename);
-        int size = is.available();
-        byte[] buffer = new byte[size];
-        is.read(buffer);
-        is.close();
-        return new String(buffer, "UTF-8");
-      } catch (Exception exception) {
-        throw new RuntimeException(exception);
-      }
+      new GenerateCalloutAtlasTask(activity).execute(featureCollection);
     }
   }
 
   /**
-   * AsyncTask to generate Bitmap from Views to be used as iconImage in a SymbolLayer.
+   * AsyncTask to draw the callout Views into a {@link SpriteAtlas}, to be used as iconImage in a SymbolLayer.
    * <p>
-   * Call be optionally be called to update the underlying data source after execution.
+   * A single View is inflated and bound to each feature in turn, all callouts share a few atlas bitmaps.
    * </p>
    * <p>
    * Generating Views on background thread since we are not going to be adding them to the view hierarchy.
    * </p>
    */
-  private static class GenerateViewIconTask extends AsyncTask<FeatureCollection, Void, HashMap<String, Bitmap>> {
+  private static class GenerateCalloutAtlasTask extends AsyncTask<FeatureCollection, Void, SpriteAtlas> {
 
-    private final HashMap<String, View> viewMap = new HashMap<>();
+    private int[] textRects;
     private final WeakReference<SymbolLayerMapillaryActivity> activityRef;
-    private final boolean refreshSource;
 
-    GenerateViewIconTask(SymbolLayerMapillaryActivity activity, boolean refreshSource) {
+    GenerateCalloutAtlasTask(SymbolLayerMapillaryActivity activity) {
       this.activityRef = new WeakReference<>(activity);
-      this.refreshSource = refreshSource;
-    }
-
-    GenerateViewIconTask(SymbolLayerMapillaryActivity activity) {
-      this(activity, false);
     }
 
     @SuppressWarnings("WrongThread")
     @Override
-    protected HashMap<String, Bitmap> doInBackground(FeatureCollection... params) {
+    protected SpriteAtlas doInBackground(FeatureCollection... params) {
       SymbolLayerMapillaryActivity activity = activityRef.get();
       if (activity != null) {
-        HashMap<String, Bitmap> imagesMap = new HashMap<>();
-        LayoutInflater inflater = LayoutInflater.from(activity);
+        SpriteAtlas atlas = new SpriteAtlas(CALLOUT_ATLAS_PAGE_SIZE, CALLOUT_ATLAS_PAGE_SIZE);
+        View view = LayoutInflater.from(activity).inflate(R.layout.layout_callout, null);
+        View textContainer = view.findViewById(R.id.text_container);
         FeatureCollection featureCollection = params[0];
+        textRects = new int[featureCollection.features().size() * 4];
+        Rect textRect = new Rect();
 
         for (Feature feature : featureCollection.features()) {
-          View view = inflater.inflate(R.layout.layout_callout, null);
-
-          String name = feature.getStringProperty(PROPERTY_TITLE);
-          TextView titleTv = (TextView) view.findViewById(R.id.title);
-          titleTv.setText(name);
-
-          String style = feature.getStringProperty(PROPERTY_STYLE);
-          TextView styleTv = (TextView) view.findViewById(R.id.style);
-          styleTv.setText(style);
-
-          boolean favourite = feature.getBooleanProperty(PROPERTY_FAVOURITE);
-          ImageView imageView = (ImageView) view.findViewById(R.id.logoView);
-          imageView.setImageResource(favourite ? R.drawable.ic_favorite : R.drawable.ic_favorite_border);
-
-          Bitmap bitmap = SymbolGenerator.generate(view);
-          imagesMap.put(name, bitmap);
-          viewMap.put(name, view);
+          bindCalloutView(view, feature);
+          int sprite = atlas.put(feature.getStringProperty(PROPERTY_TITLE), view);
+          getHitRectInRoot(textContainer, view, textRect);
+          textRects[sprite * 4] = textRect.left;
+          textRects[sprite * 4 + 1] = textRect.top;
+          textRects[sprite * 4 + 2] = textRect.right;
+          textRects[sprite * 4 + 3] = textRect.bottom;
         }
-
-        return imagesMap;
+        atlas.trimToSize();
+        return atlas;
       } else {
         return null;
       }
     }
 
     @Override
-    protected void onPostExecute(HashMap<String, Bitmap> bitmapHashMap) {
-      super.onPostExecute(bitmapHashMap);
+    protected void onPostExecute(SpriteAtlas atlas) {
+      super.onPostExecute(atlas);
       SymbolLayerMapillaryActivity activity = activityRef.get();
-      if (activity != null && bitmapHashMap != null) {
-        activity.setImageGenResults(viewMap, bitmapHashMap);
-        if (refreshSource) {
-          activity.refreshSource();
-        }
+      if (activity != null && atlas != null) {
+        activity.setCalloutAtlas(atlas, textRects);
+      } else if (atlas != null) {
+        atlas.recycle();
+      }
+    }
+
+    /**
+     * Gets the hit rect of a child view relative to the root it's laid out in, instead of its parent.
+     */
+    private static void getHitRectInRoot(View child, View root, Rect hitRect) {
+      child.getHitRect(hitRect);
+      for (View parent = (View) child.getParent(); parent != root; parent = (View) parent.getParent()) {
+        hitRect.offset(parent.getLeft(), parent.getTop());
       }
     }
   }
 
   /**
-   * Async task which fetches pictures from around the POI using Mapillary services.
+   * Async task which finds pictures from around the POI using Mapillary services.
    * https://www.mapillary.com/developer/api-documentation/
+   * <p>
+   * The task only queries the API, the pictures are then fetched a few at a time by the
+   * {@link ImageFetchPipeline} and shown on the map as they arrive. The loading circle grows with the
+   * {@link MapillaryLoadProgress} of the work which is done, and disappears once all pictures are.
+   * </p>
    */
-  private static class LoadMapillaryDataTask extends AsyncTask<Integer, Void, MapillaryDataLoadResult> {
+  private static class LoadMapillaryDataTask extends AsyncTask<Integer, Integer, FeatureCollection> {
 
     static final String URL_IMAGE_PLACEHOLDER = "https://d1cuyjsrcm0gby.cloudfront.net/%s/thumb-320.jpg";
     static final String KEY_UNIQUE_FEATURE = "key";
@@ -796,69 +889,44 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
     static final String ID_SOURCE = "cluster_source";
     static final String ID_LAYER_UNCLUSTERED = "unclustered_layer";
     static final int IMAGE_SIZE = 128;
-    static final String API_URL = "https://a.mapillary.com/v3/images/"
-      + "?lookat=%f,%f&closeto=%f,%f&radius=%d"
-      + "&client_id=bjgtc1FDTnFPaXpxeTZuUDNabmJ5dzozOGE1ODhkMmEyYTkyZTI4";
 
     private WeakReference<SymbolLayerMapillaryActivity> activityRef;
     private MapboxMap map;
-    private Picasso picasso;
-    private final Handler progressHandler;
-    private int loadingProgress;
-    private boolean loadingIncrease = true;
+    private final MapillaryImageQuery mapillaryImageQuery;
+    private ImageFetchPipeline imageFetchPipeline;
+    private final CircleBitmapRenderer circleRenderer;
+    private final BitmapPool thumbnailPool;
+    private final MapillaryLoadProgress progress = new MapillaryLoadProgress();
+    private final int poiIndex;
     private Feature feature;
 
-    public LoadMapillaryDataTask(SymbolLayerMapillaryActivity activity, MapboxMap map, Picasso picasso,
-                                 Handler progressHandler, Feature feature) {
+    public LoadMapillaryDataTask(SymbolLayerMapillaryActivity activity, MapboxMap map,
+                                 ImageFetchPipeline imageFetchPipeline, int poiIndex) {
       this.activityRef = new WeakReference<>(activity);
       this.map = map;
-      this.picasso = picasso;
-      this.progressHandler = progressHandler;
-      this.feature = feature;
+      this.imageFetchPipeline = imageFetchPipeline;
+      this.mapillaryImageQuery = activity.mapillaryImageQuery;
+      this.circleRenderer = activity.circleRenderer;
+      this.thumbnailPool = activity.thumbnailPool;
+      this.poiIndex = poiIndex;
+      this.feature = activity.poiStore.get(poiIndex);
     }
 
     @Override
     protected void onPreExecute() {
       super.onPreExecute();
-      loadingProgress = 0;
       setLoadingState(true, false);
     }
 
     @Override
-    protected MapillaryDataLoadResult doInBackground(Integer... radius) {
-      progressHandler.post(progressRunnable);
-      try {
-        Thread.sleep(2500); //ensure loading visualisation
-      } catch (InterruptedException exception) {
-        exception.printStackTrace();
-      }
-      OkHttpClient okHttpClient = new OkHttpClient();
+    protected FeatureCollection doInBackground(Integer... radius) {
       try {
         Point poiPosition = (Point) feature.geometry();
-
-        @SuppressLint("DefaultLocale") Request request = new Request.Builder()
-          .url(String.format(API_URL,
-            poiPosition.longitude(), poiPosition.latitude(),
-            poiPosition.longitude(), poiPosition.latitude(),
-            radius[0]
-          ))
-          .build();
-
-        Response response = okHttpClient.newCall(request).execute();
-        FeatureCollection featureCollection = FeatureCollection.fromJson(response.body().string());
-        MapillaryDataLoadResult mapillaryDataLoadResult = new MapillaryDataLoadResult(featureCollection);
-        for (Feature feature : featureCollection.features()) {
-          String imageId = feature.getStringProperty(KEY_UNIQUE_FEATURE);
-          String imageUrl = String.format(URL_IMAGE_PLACEHOLDER, imageId);
-          Bitmap bitmap = picasso.load(imageUrl).resize(IMAGE_SIZE, IMAGE_SIZE).get();
-
-          //cropping bitmap to be circular
-          bitmap = getCroppedBitmap(bitmap);
-
-          mapillaryDataLoadResult.add(feature, bitmap);
-        }
-        return mapillaryDataLoadResult;
-
+        publishProgress(MapillaryLoadProgress.STAGE_REQUEST_SENT);
+        FeatureCollection featureCollection = mapillaryImageQuery.query(
+          poiPosition.longitude(), poiPosition.latitude(), radius[0]);
+        publishProgress(MapillaryLoadProgress.STAGE_RESPONSE_PARSED);
+        return featureCollection;
       } catch (Exception exception) {
         Timber.e(exception);
       }
@@ -866,33 +934,99 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
     }
 
     @Override
-    protected void onPostExecute(MapillaryDataLoadResult mapillaryDataLoadResult) {
-      super.onPostExecute(mapillaryDataLoadResult);
-      setLoadingState(false, true);
-      if (mapillaryDataLoadResult == null) {
-        SymbolLayerMapillaryActivity activity = activityRef.get();
+    protected void onProgressUpdate(Integer... stages) {
+      super.onProgressUpdate(stages);
+      if (!isCancelled()) {
+        progress.onStageCompleted(stages[0]);
+        showProgress();
+      }
+    }
+
+    @Override
+    protected void onPostExecute(FeatureCollection featureCollection) {
+      super.onPostExecute(featureCollection);
+      SymbolLayerMapillaryActivity activity = activityRef.get();
+      if (featureCollection == null) {
+        setLoadingState(false, false);
         if (activity != null) {
           Toast.makeText(activity, "Error. Unable to load Mapillary data.", Toast.LENGTH_LONG).show();
         }
         return;
       }
 
-      FeatureCollection featureCollection = mapillaryDataLoadResult.mapillaryFeatureCollection;
+      // Features are only added to the source once their picture has arrived, start out empty
+      GeoJsonSource mapillarySource = getOrCreateSource();
+      mapillarySource.setGeoJson(FeatureCollection.fromFeatures(new ArrayList<Feature>()));
+      if (activity != null) {
+        activity.removeMapillaryImages();
+      }
+
+      Map<String, String> imageUrls = new LinkedHashMap<>();
+      for (Feature feature : featureCollection.features()) {
+        String imageId = feature.getStringProperty(KEY_UNIQUE_FEATURE);
+        imageUrls.put(imageId, String.format(URL_IMAGE_PLACEHOLDER, imageId));
+      }
+      ImageFetchPipeline.Fetch fetch = imageFetchPipeline.fetch(imageUrls, new ImageFetchPipeline.Processor() {
+        @NonNull
+        @Override
+        public Bitmap process(@NonNull Bitmap bitmap) {
+          //cropping bitmap to be circular, the downloaded bitmap isn't needed afterwards
+          Bitmap circle = circleRenderer.render(bitmap);
+          bitmap.recycle();
+          return circle;
+        }
 
-      Map<Feature, Bitmap> bitmapMap = mapillaryDataLoadResult.bitmapHashMap;
-      for (Map.Entry<Feature, Bitmap> featureBitmapEntry : bitmapMap.entrySet()) {
-        Feature feature = featureBitmapEntry.getKey();
-        String key = feature.getStringProperty(KEY_UNIQUE_FEATURE);
-        map.addImage(key, featureBitmapEntry.getValue());
+        @Override
+        public void discard(@NonNull Bitmap processed) {
+          thumbnailPool.release(processed);
+        }
+      }, new MapillaryImageListener(this, map, mapillarySource, thumbnailPool, featureCollection));
+      if (activity != null) {
+        activity.mapillaryImageFetch = fetch;
       }
+    }
 
+    void onImageAdded(String imageId) {
+      SymbolLayerMapillaryActivity activity = activityRef.get();
+      if (activity != null) {
+        activity.mapillaryImageIds.add(imageId);
+      }
+    }
+
+    void onFirstImagesShown() {
+      SymbolLayerMapillaryActivity activity = activityRef.get();
+      if (activity != null) {
+        activity.setActivityStep(STEP_READY);
+      }
+    }
+
+    void onImagesProgress(int completedCount, int imageCount) {
+      progress.onImagesCompleted(completedCount, imageCount);
+      showProgress();
+    }
+
+    void onImagesFinished(boolean anyShown) {
+      // With pictures on the map, the camera already moved on to the ready step when the first ones arrived
+      setLoadingState(false, !anyShown);
+    }
+
+    /**
+     * Stop loading, also when the task is already done and only the pictures are still being fetched.
+     */
+    void cancelLoading() {
+      cancel(true);
+      setLoadingState(false, false);
+    }
+
+    private GeoJsonSource getOrCreateSource() {
       GeoJsonSource mapillarySource = (GeoJsonSource) map.getSource(ID_SOURCE);
       if (mapillarySource == null) {
-        map.addSource(new GeoJsonSource(ID_SOURCE, featureCollection, new GeoJsonOptions()
-          .withCluster(true)
-          .withClusterMaxZoom(17)
-          .withClusterRadius(IMAGE_SIZE / 3)
-        ));
+        mapillarySource = new GeoJsonSource(ID_SOURCE, FeatureCollection.fromFeatures(new ArrayList<Feature>()),
+          new GeoJsonOptions()
+            .withCluster(true)
+            .withClusterMaxZoom(17)
+            .withClusterRadius(IMAGE_SIZE / 3));
+        map.addSource(mapillarySource);
 
         // unclustered
         map.addLayerBelow(new SymbolLayer(ID_LAYER_UNCLUSTERED, ID_SOURCE).withProperties(
@@ -953,67 +1087,26 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
           textIgnorePlacement(true)
         );
         map.addLayerBelow(count, MAKI_LAYER_ID);
-      } else {
-        mapillarySource.setGeoJson(featureCollection);
       }
+      return mapillarySource;
     }
 
-    static Bitmap getCroppedBitmap(Bitmap bitmap) {
-      Bitmap output = Bitmap.createBitmap(bitmap.getWidth(),
-        bitmap.getHeight(), Bitmap.Config.ARGB_8888);
-      Canvas canvas = new Canvas(output);
-
-      final int color = 0xff424242;
-      final Paint paint = new Paint();
-      final Rect rect = new Rect(0, 0, bitmap.getWidth(), bitmap.getHeight());
-
-      paint.setAntiAlias(true);
-      canvas.drawARGB(0, 0, 0, 0);
-      paint.setColor(color);
-      // canvas.drawRoundRect(rectF, roundPx, roundPx, paint);
-      canvas.drawCircle(bitmap.getWidth() / 2, bitmap.getHeight() / 2,
-        bitmap.getWidth() / 2, paint);
-      paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
-      canvas.drawBitmap(bitmap, rect, rect, paint);
-      //Bitmap _bmp = Bitmap.createScaledBitmap(output, 60, 60, false);
-      //return _bmp;
-      return output;
-    }
-
-    private Runnable progressRunnable = new Runnable() {
-      @Override
-      public void run() {
-        if (isCancelled()) {
-          setLoadingState(false, false);
-          return;
-        }
-
-        if (loadingIncrease) {
-          if (loadingProgress >= LOADING_PROGRESS_STEPS) {
-            loadingIncrease = false;
-          }
-        } else {
-          if (loadingProgress <= 0) {
-            loadingIncrease = true;
-          }
-        }
-
-        loadingProgress = loadingIncrease ? loadingProgress + 1 : loadingProgress - 1;
-
-        feature.addNumberProperty(PROPERTY_LOADING_PROGRESS, loadingProgress);
-        SymbolLayerMapillaryActivity activity = activityRef.get();
-        if (activity != null) {
-          activity.refreshSource();
-        }
-        progressHandler.postDelayed(this, LOADING_STEP_DURATION);
+    private void showProgress() {
+      SymbolLayerMapillaryActivity activity = activityRef.get();
+      if (activity != null) {
+        activity.loadingCircleAnimator.setTarget(progress.getFraction());
       }
-    };
+    }
 
     private void setLoadingState(boolean isLoading, boolean isSuccess) {
-      progressHandler.removeCallbacksAndMessages(null);
-      feature.addBooleanProperty(PROPERTY_LOADING, isLoading);
       SymbolLayerMapillaryActivity activity = activityRef.get();
       if (activity != null) {
+        if (isLoading) {
+          activity.loadingCircleAnimator.jumpTo(0);
+        } else {
+          activity.loadingCircleAnimator.cancel();
+        }
+        activity.poiStore.setBooleanProperty(poiIndex, PROPERTY_LOADING, isLoading);
         activity.refreshSource();
 
         if (isLoading) { //zooming to a loading state
@@ -1025,46 +1118,90 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
     }
   }
 
-  private static class MapillaryDataLoadResult {
-    private final HashMap<Feature, Bitmap> bitmapHashMap = new HashMap<>();
-    private final FeatureCollection mapillaryFeatureCollection;
+  /**
+   * Progress of loading the Mapillary data of a POI, measured from the work which is actually done.
+   * <p>
+   * Sending the API request and parsing its response each complete a fixed share of the work, the
+   * pictures complete the rest in proportion to how many of them are done.
+   * </p>
+   */
+  private static class MapillaryLoadProgress {
+
+    static final int STAGE_REQUEST_SENT = 0;
+    static final int STAGE_RESPONSE_PARSED = 1;
+
+    private static final float REQUEST_SENT_FRACTION = 0.1f;
+    private static final float RESPONSE_PARSED_FRACTION = 0.3f;
+
+    private float fraction;
 
-    MapillaryDataLoadResult(FeatureCollection mapillaryFeatureCollection) {
-      this.mapillaryFeatureCollection = mapillaryFeatureCollection;
+    void onStageCompleted(int stage) {
+      fraction = Math.max(fraction, stage == STAGE_REQUEST_SENT ? REQUEST_SENT_FRACTION : RESPONSE_PARSED_FRACTION);
     }
 
-    public void add(Feature feature, Bitmap bitmap) {
-      bitmapHashMap.put(feature, bitmap);
+    void onImagesCompleted(int completedCount, int imageCount) {
+      float imagesFraction = imageCount == 0 ? 1 : (float) completedCount / imageCount;
+      fraction = RESPONSE_PARSED_FRACTION + (1 - RESPONSE_PARSED_FRACTION) * imagesFraction;
+    }
+
+    /**
+     * @return the completed share of the work, from 0 to 1
+     */
+    float getFraction() {
+      return fraction;
     }
   }
 
   /**
-   * Utility class to generate Bitmaps for Symbol.
+   * Adds the Mapillary pictures to the map as they arrive, together with the features showing them.
    * <p>
-   * Bitmaps can be added to the map with {@link com.mapbox.mapboxsdk.maps.MapboxMap#addImage(String, Bitmap)}
+   * Every picture is added as an image right away, the source is updated once per batch of pictures. The map
+   * keeps a copy of each image, so the bitmaps go back to the pool as soon as they're added.
    * </p>
    */
-  private static class SymbolGenerator {
+  private static class MapillaryImageListener implements ImageFetchPipeline.Listener {
+
+    private final LoadMapillaryDataTask task;
+    private final MapboxMap map;
+    private final GeoJsonSource source;
+    private final BitmapPool thumbnailPool;
+    private final Map<String, Feature> featuresByKey = new HashMap<>();
+    private final List<Feature> shownFeatures = new ArrayList<>();
+
+    MapillaryImageListener(LoadMapillaryDataTask task, MapboxMap map, GeoJsonSource source,
+                           BitmapPool thumbnailPool, FeatureCollection featureCollection) {
+      this.task = task;
+      this.map = map;
+      this.source = source;
+      this.thumbnailPool = thumbnailPool;
+      for (Feature feature : featureCollection.features()) {
+        featuresByKey.put(feature.getStringProperty(LoadMapillaryDataTask.KEY_UNIQUE_FEATURE), feature);
+      }
+    }
 
-    /**
-     * Generate a Bitmap from an Android SDK View.
-     *
-     * @param view the View to be drawn to a Bitmap
-     * @return the generated bitmap
-     */
-    static Bitmap generate(@NonNull View view) {
-      int measureSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
-      view.measure(measureSpec, measureSpec);
-
-      int measuredWidth = view.getMeasuredWidth();
-      int measuredHeight = view.getMeasuredHeight();
-
-      view.layout(0, 0, measuredWidth, measuredHeight);
-      Bitmap bitmap = Bitmap.createBitmap(measuredWidth, measuredHeight, Bitmap.Config.ARGB_8888);
-      bitmap.eraseColor(Color.TRANSPARENT);
-      Canvas canvas = new Canvas(bitmap);
-      view.draw(canvas);
-      return bitmap;
+    @Override
+    public void onImagesFetched(@NonNull Map<String, Bitmap> images) {
+      boolean firstImages = shownFeatures.isEmpty();
+      for (Map.Entry<String, Bitmap> image : images.entrySet()) {
+        map.addImage(image.getKey(), image.getValue());
+        thumbnailPool.release(image.getValue());
+        task.onImageAdded(image.getKey());
+        shownFeatures.add(featuresByKey.get(image.getKey()));
+      }
+      source.setGeoJson(FeatureCollection.fromFeatures(shownFeatures));
+      if (firstImages) {
+        task.onFirstImagesShown();
+      }
+    }
+
+    @Override
+    public void onFetchProgress(int completedCount, int imageCount) {
+      task.onImagesProgress(completedCount, imageCount);
+    }
+
+    @Override
+    public void onFetchFinished(int fetchedCount, int failedCount) {
+      task.onImagesFinished(fetchedCount > 0);
     }
   }
 
@@ -1077,11 +1214,15 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
     static final String ID_SOURCE = "mapillary.source";
     static final String ID_LINE_LAYER = "mapillary.layer.line";
     static final String URL_TILESET = "https://d25uarhxywzl1j.cloudfront.net/v0.1/{z}/{x}/{y}.mvt";
+    static final int MAX_ZOOM = 14;
 
-    static Source createSource() {
-      TileSet mapillaryTileset = new TileSet("2.1.0", MapillaryTiles.URL_TILESET);
+    /**
+     * @param tileUrl the URL of the tiles, either {@link #URL_TILESET} or a local cache of it
+     */
+    static Source createSource(String tileUrl) {
+      TileSet mapillaryTileset = new TileSet("2.1.0", tileUrl);
       mapillaryTileset.setMinZoom(0);
-      mapillaryTileset.setMaxZoom(14);
+      mapillaryTileset.setMaxZoom(MAX_ZOOM);
       return new VectorSource(MapillaryTiles.ID_SOURCE, mapillaryTileset);
     }
 
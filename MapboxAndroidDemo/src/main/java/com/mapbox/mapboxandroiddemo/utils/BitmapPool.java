@@ -0,0 +1,105 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps ARGB_8888 bitmaps which are no longer in use, to draw into again instead of allocating new ones.
+ * <p>
+ * Bitmaps are pooled by size, a bitmap is only handed out again for the exact width and height it was
+ * created with. The pool holds at most a fixed number of bytes, bitmaps released to a full pool are
+ * recycled. All methods can be called from any thread.
+ * </p>
+ */
+public final class BitmapPool {
+
+  private final int maxBytes;
+  private final Map<Long, ArrayDeque<Bitmap>> pools = new HashMap<>();
+  private int pooledBytes;
+
+  /**
+   * @param maxBytes the maximum memory of the bitmaps kept for reuse
+   */
+  public BitmapPool(int maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Take a bitmap from the pool, or create one if the pool doesn't have one of the size. The contents of a
+   * pooled bitmap are undefined.
+   *
+   * @param width  the width of the bitmap
+   * @param height the height of the bitmap
+   * @return a mutable bitmap, to be released when it's no longer used
+   */
+  @NonNull
+  public Bitmap acquire(int width, int height) {
+    synchronized (this) {
+      ArrayDeque<Bitmap> pool = pools.get(getSizeKey(width, height));
+      if (pool != null && !pool.isEmpty()) {
+        Bitmap bitmap = pool.pop();
+        pooledBytes -= getByteCount(bitmap);
+        return bitmap;
+      }
+    }
+    return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+  }
+
+  /**
+   * Hand a bitmap back to the pool. It must not be used by the caller afterwards.
+   *
+   * @param bitmap a bitmap from {@link #acquire(int, int)}
+   */
+  public void release(@NonNull Bitmap bitmap) {
+    if (bitmap.isRecycled()) {
+      return;
+    }
+    synchronized (this) {
+      int byteCount = getByteCount(bitmap);
+      if (bitmap.isMutable() && bitmap.getConfig() == Bitmap.Config.ARGB_8888
+        && pooledBytes + byteCount <= maxBytes) {
+        Long sizeKey = getSizeKey(bitmap.getWidth(), bitmap.getHeight());
+        ArrayDeque<Bitmap> pool = pools.get(sizeKey);
+        if (pool == null) {
+          pool = new ArrayDeque<>();
+          pools.put(sizeKey, pool);
+        }
+        pool.push(bitmap);
+        pooledBytes += byteCount;
+        return;
+      }
+    }
+    bitmap.recycle();
+  }
+
+  /**
+   * Recycle all pooled bitmaps.
+   */
+  public void clear() {
+    List<Bitmap> bitmaps = new ArrayList<>();
+    synchronized (this) {
+      for (ArrayDeque<Bitmap> pool : pools.values()) {
+        bitmaps.addAll(pool);
+      }
+      pools.clear();
+      pooledBytes = 0;
+    }
+    for (Bitmap bitmap : bitmaps) {
+      bitmap.recycle();
+    }
+  }
+
+  private static long getSizeKey(int width, int height) {
+    return ((long) width << 32) | height;
+  }
+
+  private static int getByteCount(Bitmap bitmap) {
+    return bitmap.getRowBytes() * bitmap.getHeight();
+  }
+}
@@ -0,0 +1,208 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.TimeInterpolator;
+import android.animation.ValueAnimator;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.view.animation.FastOutSlowInInterpolator;
+
+import com.mapbox.mapboxsdk.camera.CameraPosition;
+import com.mapbox.mapboxsdk.camera.CameraUpdate;
+import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.maps.MapboxMap;
+
+/**
+ * Animates the camera of a map to a new position, moving it once per frame.
+ * <p>
+ * Animating the target, zoom, bearing and tilt with an animator each moves the camera up to four times a
+ * frame, and every move is a full transform of the map. Here a single animator drives all four: they're
+ * interpolated as plain numbers and applied together in one {@link MapboxMap#moveCamera(CameraUpdate)}. The
+ * longitude and bearing take the short way around. The only objects created per frame are the immutable
+ * position handed to the map, with its builder and target.
+ * </p>
+ * <p>
+ * Starting an animation cancels the one which is running, from wherever the camera is at that moment.
+ * </p>
+ */
+@MainThread
+public final class CameraAnimator {
+
+  private final MapboxMap mapboxMap;
+  private final ValueAnimator animator = ValueAnimator.ofFloat(0, 1);
+  private final FrameUpdate frameUpdate = new FrameUpdate();
+  private Listener listener;
+  private boolean cancelled;
+
+  // Where the animation starts and how far each value moves
+  private double startLatitude;
+  private double latitudeDelta;
+  private double startLongitude;
+  private double longitudeDelta;
+  private double startZoom;
+  private double zoomDelta;
+  private double startBearing;
+  private double bearingDelta;
+  private double startTilt;
+  private double tiltDelta;
+
+  /**
+   * Follows an animation frame by frame.
+   */
+  public interface Listener {
+
+    /**
+     * Called after the camera moved.
+     *
+     * @param position the position of the camera in this frame
+     */
+    void onCameraFrame(@NonNull CameraPosition position);
+
+    /**
+     * Called once the camera reached the end position, unless the animation was cancelled.
+     */
+    void onCameraAnimationFinished();
+  }
+
+  /**
+   * @param mapboxMap the map to move the camera of
+   */
+  public CameraAnimator(@NonNull MapboxMap mapboxMap) {
+    this.mapboxMap = mapboxMap;
+    animator.setInterpolator(new FastOutSlowInInterpolator());
+    animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+      @Override
+      public void onAnimationUpdate(ValueAnimator animation) {
+        onFrame(animation.getAnimatedFraction());
+      }
+    });
+    animator.addListener(new AnimatorListenerAdapter() {
+      @Override
+      public void onAnimationCancel(Animator animation) {
+        cancelled = true;
+      }
+
+      @Override
+      public void onAnimationEnd(Animator animation) {
+        if (!cancelled && listener != null) {
+          listener.onCameraAnimationFinished();
+        }
+      }
+    });
+  }
+
+  /**
+   * @param interpolator the easing of the animations, fast out slow in by default
+   */
+  public void setInterpolator(@NonNull TimeInterpolator interpolator) {
+    animator.setInterpolator(interpolator);
+  }
+
+  /**
+   * Animate the camera from its current position.
+   *
+   * @param target   the end position. Values which aren't set on a {@link CameraPosition.Builder}, like a
+   *                 missing target or a negative zoom, stay as they are.
+   * @param duration the duration of the animation, in milliseconds
+   */
+  public void animateTo(@NonNull CameraPosition target, long duration) {
+    animateTo(target, duration, null);
+  }
+
+  /**
+   * Animate the camera from its current position.
+   *
+   * @param target   the end position. Values which aren't set on a {@link CameraPosition.Builder}, like a
+   *                 missing target or a negative zoom, stay as they are.
+   * @param duration the duration of the animation, in milliseconds
+   * @param listener called on every frame of this animation, or null
+   */
+  public void animateTo(@NonNull CameraPosition target, long duration, @Nullable Listener listener) {
+    cancel();
+    CameraPosition start = mapboxMap.getCameraPosition();
+    startLatitude = start.target.getLatitude();
+    startLongitude = start.target.getLongitude();
+    startZoom = start.zoom;
+    startBearing = start.bearing;
+    startTilt = start.tilt;
+
+    if (target.target != null) {
+      latitudeDelta = target.target.getLatitude() - startLatitude;
+      longitudeDelta = shortestDelta(startLongitude, target.target.getLongitude(), 360);
+    } else {
+      latitudeDelta = 0;
+      longitudeDelta = 0;
+    }
+    zoomDelta = target.zoom >= 0 ? target.zoom - startZoom : 0;
+    bearingDelta = target.bearing >= 0 ? shortestDelta(startBearing, target.bearing, 360) : 0;
+    tiltDelta = target.tilt >= 0 ? target.tilt - startTilt : 0;
+
+    this.listener = listener;
+    cancelled = false;
+    animator.setDuration(duration);
+    animator.start();
+  }
+
+  /**
+   * Stop the animation, the camera stays where it is. The listener isn't called anymore.
+   */
+  public void cancel() {
+    if (animator.isStarted()) {
+      animator.cancel();
+    }
+    listener = null;
+  }
+
+  public boolean isRunning() {
+    return animator.isStarted();
+  }
+
+  private void onFrame(float fraction) {
+    double longitude = wrap(startLongitude + longitudeDelta * fraction, -180, 180);
+    frameUpdate.position = new CameraPosition.Builder()
+      .target(new LatLng(startLatitude + latitudeDelta * fraction, longitude))
+      .zoom(startZoom + zoomDelta * fraction)
+      .bearing(wrap(startBearing + bearingDelta * fraction, 0, 360))
+      .tilt(startTilt + tiltDelta * fraction)
+      .build();
+    mapboxMap.moveCamera(frameUpdate);
+    if (listener != null) {
+      listener.onCameraFrame(frameUpdate.position);
+    }
+  }
+
+  /**
+   * The signed difference from one value on a circle to another, going the shortest way around.
+   */
+  private static double shortestDelta(double from, double to, double period) {
+    double delta = (to - from) % period;
+    if (delta > period / 2) {
+      delta -= period;
+    } else if (delta < -period / 2) {
+      delta += period;
+    }
+    return delta;
+  }
+
+  private static double wrap(double value, double min, double max) {
+    double range = max - min;
+    double wrapped = ((value - min) % range + range) % range + min;
+    return wrapped == max ? min : wrapped;
+  }
+
+  /**
+   * Hands the position of the current frame to the map, reused so moving the camera doesn't create an
+   * update object every frame.
+   */
+  private static final class FrameUpdate implements CameraUpdate {
+
+    CameraPosition position;
+
+    @Override
+    public CameraPosition getCameraPosition(@NonNull MapboxMap mapboxMap) {
+      return position;
+    }
+  }
+}
@@ -0,0 +1,257 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import timber.log.Timber;
+
+/**
+ * Stores small blobs, like API responses or encoded thumbnails, as files in a directory of their own.
+ * <p>
+ * Entries expire a fixed time after they were written. The directory holds at most a fixed number of
+ * bytes, when it's full the least recently used entries are deleted. Use order is tracked in memory and
+ * starts out as the order the files were written in, so it survives restarts approximately.
+ * </p>
+ * <p>
+ * Nothing touches the disk until the first read or write, so a cache can be created on the main thread.
+ * All other methods do file I/O and are meant for background threads, they can be called from several at
+ * once.
+ * </p>
+ */
+public final class DiskCache {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private final File directory;
+  private final long maxBytes;
+  private final long ttlMillis;
+
+  // By file name, least recently used first. Loaded from the directory on first use.
+  private LinkedHashMap<String, Entry> entries;
+  private long size;
+
+  /**
+   * @param directory the directory to store the entries in, which is created if needed and shouldn't be
+   *                  used for anything else
+   * @param maxBytes  the maximum total size of the entries
+   * @param ttlMillis how long an entry can be read after it was written
+   */
+  public DiskCache(@NonNull File directory, long maxBytes, long ttlMillis) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    this.ttlMillis = ttlMillis;
+  }
+
+  /**
+   * @param key the key the value was stored with
+   * @return the value, or null if there isn't one or it expired
+   */
+  @WorkerThread
+  @Nullable
+  public synchronized byte[] get(@NonNull String key) {
+    loadEntries();
+    String fileName = getFileName(key);
+    Entry entry = entries.get(fileName);
+    if (entry == null) {
+      return null;
+    }
+    if (System.currentTimeMillis() - entry.writtenAt > ttlMillis) {
+      remove(fileName);
+      return null;
+    }
+    try {
+      return read(new File(directory, fileName));
+    } catch (IOException exception) {
+      Timber.w(exception, "Unable to read cache entry %s", key);
+      remove(fileName);
+      return null;
+    }
+  }
+
+  /**
+   * @param key the key the value was stored with
+   * @return true if there's a value for the key which didn't expire, without reading it
+   */
+  @WorkerThread
+  public synchronized boolean contains(@NonNull String key) {
+    loadEntries();
+    String fileName = getFileName(key);
+    Entry entry = entries.get(fileName);
+    if (entry != null && System.currentTimeMillis() - entry.writtenAt > ttlMillis) {
+      remove(fileName);
+      return false;
+    }
+    return entry != null;
+  }
+
+  /**
+   * Store a value, replacing the previous one under the key. Values which don't fit in the cache at all
+   * aren't stored.
+   *
+   * @param key   the key to read the value with
+   * @param value the value
+   */
+  @WorkerThread
+  public synchronized void put(@NonNull String key, @NonNull byte[] value) {
+    loadEntries();
+    if (value.length > maxBytes) {
+      return;
+    }
+    String fileName = getFileName(key);
+    File file = new File(directory, fileName);
+    // Written next to the entry and renamed, so a crash halfway through never leaves a truncated entry
+    File tempFile = new File(directory, fileName + TEMP_SUFFIX);
+    try {
+      write(tempFile, value);
+      if (!tempFile.renameTo(file)) {
+        throw new IOException("Unable to rename " + tempFile);
+      }
+    } catch (IOException exception) {
+      Timber.w(exception, "Unable to write cache entry %s", key);
+      tempFile.delete();
+      remove(fileName);
+      return;
+    }
+
+    Entry previous = entries.remove(fileName);
+    if (previous != null) {
+      size -= previous.byteCount;
+    }
+    entries.put(fileName, new Entry(value.length, System.currentTimeMillis()));
+    size += value.length;
+    trimToSize();
+  }
+
+  /**
+   * Delete all entries.
+   */
+  @WorkerThread
+  public synchronized void clear() {
+    loadEntries();
+    for (String fileName : entries.keySet()) {
+      new File(directory, fileName).delete();
+    }
+    entries.clear();
+    size = 0;
+  }
+
+  private void loadEntries() {
+    if (entries != null) {
+      return;
+    }
+    entries = new LinkedHashMap<>(16, 0.75f, true);
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      Timber.w("Unable to create cache directory %s", directory);
+      return;
+    }
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    Arrays.sort(files, new Comparator<File>() {
+      @Override
+      public int compare(File first, File second) {
+        long difference = first.lastModified() - second.lastModified();
+        return difference < 0 ? -1 : difference > 0 ? 1 : 0;
+      }
+    });
+    for (File file : files) {
+      if (file.getName().endsWith(TEMP_SUFFIX)) {
+        // Left behind by a write which didn't finish
+        file.delete();
+        continue;
+      }
+      entries.put(file.getName(), new Entry(file.length(), file.lastModified()));
+      size += file.length();
+    }
+    trimToSize();
+  }
+
+  private void trimToSize() {
+    Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+    while (size > maxBytes && iterator.hasNext()) {
+      Map.Entry<String, Entry> eldest = iterator.next();
+      new File(directory, eldest.getKey()).delete();
+      size -= eldest.getValue().byteCount;
+      iterator.remove();
+    }
+  }
+
+  private void remove(String fileName) {
+    Entry entry = entries.remove(fileName);
+    if (entry != null) {
+      size -= entry.byteCount;
+    }
+    new File(directory, fileName).delete();
+  }
+
+  /**
+   * Keys can contain anything, the file is named by a hash of the key instead.
+   */
+  private static String getFileName(String key) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(UTF_8));
+      StringBuilder fileName = new StringBuilder(digest.length * 2);
+      for (byte value : digest) {
+        fileName.append(Character.forDigit((value >> 4) & 0xf, 16));
+        fileName.append(Character.forDigit(value & 0xf, 16));
+      }
+      return fileName.toString();
+    } catch (NoSuchAlgorithmException exception) {
+      throw new IllegalStateException(exception);
+    }
+  }
+
+  private static byte[] read(File file) throws IOException {
+    InputStream input = new FileInputStream(file);
+    try {
+      ByteArrayOutputStream output = new ByteArrayOutputStream((int) file.length());
+      byte[] buffer = new byte[8192];
+      int count;
+      while ((count = input.read(buffer)) != -1) {
+        output.write(buffer, 0, count);
+      }
+      return output.toByteArray();
+    } finally {
+      input.close();
+    }
+  }
+
+  private static void write(File file, byte[] value) throws IOException {
+    OutputStream output = new FileOutputStream(file);
+    try {
+      output.write(value);
+    } finally {
+      output.close();
+    }
+  }
+
+  private static final class Entry {
+
+    final long byteCount;
+    final long writtenAt;
+
+    Entry(long byteCount, long writtenAt) {
+      this.byteCount = byteCount;
+      this.writtenAt = writtenAt;
+    }
+  }
+}
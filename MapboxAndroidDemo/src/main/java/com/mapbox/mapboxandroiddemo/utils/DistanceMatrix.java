@@ -0,0 +1,142 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.RequiresApi;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the great-circle distances between all pairs of a set of points, as a local stand-in for the
+ * Matrix API.
+ * <p>
+ * Points are converted to unit vectors once, after which the distance of a pair is the arc of the chord
+ * between their vectors: a few multiplications, a square root and an arcsine. The matrix is a single
+ * row-major array, so every row is written front to back. Rows are independent, the parallel version
+ * splits them over a fork-join pool in ranges large enough to keep the tasks cheap relative to their work.
+ * </p>
+ * <p>
+ * An optional road factor scales the distances, as a rough estimate of the detour roads take compared to
+ * a straight line.
+ * </p>
+ */
+public final class DistanceMatrix {
+
+  private static final double EARTH_RADIUS_METERS = 6371008.8;
+  // About the number of pair distances each fork-join task computes
+  private static final int PAIRS_PER_TASK = 16384;
+
+  private DistanceMatrix() {
+    // No instances
+  }
+
+  /**
+   * Compute the matrix on the calling thread.
+   *
+   * @param coordinates the longitude and latitude of each point, in degrees, one pair after the other
+   * @param roadFactor  the factor the distances are multiplied with, 1 for great-circle distances
+   * @return the distance in meters from each point to each point, row by row
+   */
+  @NonNull
+  public static double[] compute(@NonNull double[] coordinates, double roadFactor) {
+    int size = coordinates.length / 2;
+    double[] vectors = toUnitVectors(coordinates);
+    double[] matrix = new double[size * size];
+    computeRows(vectors, size, 2 * EARTH_RADIUS_METERS * roadFactor, matrix, 0, size);
+    return matrix;
+  }
+
+  /**
+   * Compute the matrix with the rows split over a fork-join pool, the calling thread waits for the result.
+   *
+   * @param coordinates the longitude and latitude of each point, in degrees, one pair after the other
+   * @param roadFactor  the factor the distances are multiplied with, 1 for great-circle distances
+   * @param pool        the pool to compute the rows in
+   * @return the distance in meters from each point to each point, row by row
+   */
+  @RequiresApi(21)
+  @NonNull
+  public static double[] compute(@NonNull double[] coordinates, double roadFactor, @NonNull ForkJoinPool pool) {
+    int size = coordinates.length / 2;
+    double[] vectors = toUnitVectors(coordinates);
+    double[] matrix = new double[size * size];
+    int rowsPerTask = Math.max(1, PAIRS_PER_TASK / Math.max(1, size));
+    pool.invoke(new RowsTask(vectors, size, 2 * EARTH_RADIUS_METERS * roadFactor, matrix, 0, size, rowsPerTask));
+    return matrix;
+  }
+
+  /**
+   * Convert longitude and latitude pairs to x, y and z on the unit sphere.
+   */
+  private static double[] toUnitVectors(double[] coordinates) {
+    int size = coordinates.length / 2;
+    double[] vectors = new double[size * 3];
+    for (int i = 0; i < size; i++) {
+      double longitude = Math.toRadians(coordinates[i * 2]);
+      double latitude = Math.toRadians(coordinates[i * 2 + 1]);
+      double cosLatitude = Math.cos(latitude);
+      vectors[i * 3] = cosLatitude * Math.cos(longitude);
+      vectors[i * 3 + 1] = cosLatitude * Math.sin(longitude);
+      vectors[i * 3 + 2] = Math.sin(latitude);
+    }
+    return vectors;
+  }
+
+  /**
+   * Fill rows [fromRow, toRow) of the matrix.
+   *
+   * @param scale the diameter of the earth times the road factor
+   */
+  private static void computeRows(double[] vectors, int size, double scale, double[] matrix, int fromRow,
+                                  int toRow) {
+    for (int row = fromRow; row < toRow; row++) {
+      double x = vectors[row * 3];
+      double y = vectors[row * 3 + 1];
+      double z = vectors[row * 3 + 2];
+      int offset = row * size;
+      for (int column = 0; column < size; column++) {
+        double dx = x - vectors[column * 3];
+        double dy = y - vectors[column * 3 + 1];
+        double dz = z - vectors[column * 3 + 2];
+        // The chord is 2 sin(angle / 2), which stays accurate for points close together
+        double halfChord = Math.min(1, Math.sqrt(dx * dx + dy * dy + dz * dz) / 2);
+        matrix[offset + column] = scale * Math.asin(halfChord);
+      }
+    }
+  }
+
+  @RequiresApi(21)
+  private static final class RowsTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final double[] vectors;
+    private final int size;
+    private final double scale;
+    private final double[] matrix;
+    private final int fromRow;
+    private final int toRow;
+    private final int rowsPerTask;
+
+    RowsTask(double[] vectors, int size, double scale, double[] matrix, int fromRow, int toRow, int rowsPerTask) {
+      this.vectors = vectors;
+      this.size = size;
+      this.scale = scale;
+      this.matrix = matrix;
+      this.fromRow = fromRow;
+      this.toRow = toRow;
+      this.rowsPerTask = rowsPerTask;
+    }
+
+    @Override
+    protected void compute() {
+      if (toRow - fromRow <= rowsPerTask) {
+        computeRows(vectors, size, scale, matrix, fromRow, toRow);
+        return;
+      }
+      int middle = (fromRow + toRow) >>> 1;
+      invokeAll(new RowsTask(vectors, size, scale, matrix, fromRow, middle, rowsPerTask),
+        new RowsTask(vectors, size, scale, matrix, middle, toRow, rowsPerTask));
+    }
+  }
+}
@@ -0,0 +1,277 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.mapbox.geojson.CoordinateContainer;
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.Geometry;
+import com.mapbox.geojson.GeometryCollection;
+import com.mapbox.geojson.Point;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Process wide cache of FeatureCollections parsed from the assets folder, keyed by asset name and the
+ * properties kept on the features.
+ * <p>
+ * The cache is bounded by an estimate of the heap used by the parsed features and evicts the least
+ * recently used asset first. It registers itself for memory callbacks on the application context and
+ * shrinks or empties itself when the system runs low on memory.
+ * </p>
+ * <p>
+ * Cached collections are shared between all callers and must not be modified. Code which changes
+ * feature properties should load its own copy with {@link GeoJsonAssetLoader} instead.
+ * </p>
+ */
+public final class FeatureCollectionCache {
+
+  /**
+   * Pass as the property keys to load features without any properties.
+   */
+  public static final String[] NO_PROPERTIES = {};
+
+  // Rough heap cost of the objects behind a parsed feature, see estimateSize()
+  private static final int FEATURE_BYTES = 96;
+  private static final int POINT_BYTES = 112;
+  private static final int LIST_BYTES = 40;
+  private static final int JSON_ENTRY_BYTES = 56;
+  private static final int JSON_VALUE_BYTES = 32;
+  private static final int STRING_BYTES = 40;
+
+  private static final int MEMORY_FRACTION = 16;
+
+  private static FeatureCollectionCache instance;
+
+  private final LruCache<String, FeatureCollection> cache;
+
+  private FeatureCollectionCache(int maxSizeBytes) {
+    cache = new LruCache<String, FeatureCollection>(maxSizeBytes) {
+      @Override
+      protected int sizeOf(String cacheKey, FeatureCollection featureCollection) {
+        return estimateSize(featureCollection);
+      }
+    };
+  }
+
+  /**
+   * Returns the cache, creating it on first use.
+   *
+   * @param context any context, the cache only holds on to the application context
+   * @return the process wide cache
+   */
+  @NonNull
+  public static synchronized FeatureCollectionCache getInstance(@NonNull Context context) {
+    if (instance == null) {
+      int maxSizeBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / MEMORY_FRACTION);
+      instance = new FeatureCollectionCache(maxSizeBytes);
+      context.getApplicationContext().registerComponentCallbacks(instance.memoryCallbacks);
+    }
+    return instance;
+  }
+
+  /**
+   * Returns the parsed features of a GeoJSON file in the assets folder, loading and caching them with
+   * {@link GeoJsonAssetLoader} if they aren't cached yet.
+   *
+   * @param context  the context used to access the assets
+   * @param filename the name of the GeoJSON file in the assets folder
+   * @return the shared features, which must not be modified, or null if the file could not be read
+   */
+  @Nullable
+  public static FeatureCollection loadFeatureCollection(@NonNull Context context, @NonNull String filename) {
+    return getInstance(context).get(context, filename);
+  }
+
+  /**
+   * Returns the parsed features of a GeoJSON file in the assets folder with only some of their
+   * properties, loading and caching them if they aren't cached yet. The renderer only needs the
+   * properties its layers read, dropping the others saves parsing them and keeping them in memory.
+   *
+   * @param context      the context used to access the assets
+   * @param filename     the name of the GeoJSON file in the assets folder
+   * @param propertyKeys the properties to keep, or {@link #NO_PROPERTIES}
+   * @return the shared features, which must not be modified, or null if the file could not be read
+   */
+  @Nullable
+  public static FeatureCollection loadFeatureCollection(@NonNull Context context, @NonNull String filename,
+                                                        @NonNull String... propertyKeys) {
+    return getInstance(context).get(context, filename, propertyKeys);
+  }
+
+  /**
+   * Returns the parsed features of a GeoJSON file in the assets folder with all their properties, loading
+   * and caching them if they aren't cached yet.
+   *
+   * @param context  the context used to access the assets
+   * @param filename the name of the GeoJSON file in the assets folder
+   * @return the shared features, which must not be modified, or null if the file could not be read
+   */
+  @Nullable
+  public FeatureCollection get(@NonNull Context context, @NonNull String filename) {
+    return get(context, filename, (String[]) null);
+  }
+
+  /**
+   * Returns the parsed features of a GeoJSON file in the assets folder with only some of their properties,
+   * loading and caching them if they aren't cached yet. Each set of property keys is cached separately.
+   *
+   * @param context      the context used to access the assets
+   * @param filename     the name of the GeoJSON file in the assets folder
+   * @param propertyKeys the properties to keep, or null to keep all of them
+   * @return the shared features, which must not be modified, or null if the file could not be read
+   */
+  @Nullable
+  public FeatureCollection get(@NonNull Context context, @NonNull String filename,
+                               @Nullable String[] propertyKeys) {
+    Set<String> keys = propertyKeys != null ? new HashSet<>(Arrays.asList(propertyKeys)) : null;
+    String cacheKey = getCacheKey(filename, propertyKeys);
+    FeatureCollection featureCollection = cache.get(cacheKey);
+    if (featureCollection == null) {
+      featureCollection = GeoJsonAssetLoader.loadFeatureCollection(context, filename, keys);
+      if (featureCollection != null) {
+        cache.put(cacheKey, featureCollection);
+      }
+    }
+    return featureCollection;
+  }
+
+  private static String getCacheKey(String filename, @Nullable String[] propertyKeys) {
+    if (propertyKeys == null) {
+      return filename;
+    }
+    String[] sortedKeys = propertyKeys.clone();
+    Arrays.sort(sortedKeys);
+    StringBuilder cacheKey = new StringBuilder(filename).append('?');
+    for (String key : sortedKeys) {
+      cacheKey.append(key).append('&');
+    }
+    return cacheKey.toString();
+  }
+
+  /**
+   * Evicts the least recently used assets until the estimated size of the rest fits. The cache fills up
+   * to its original bound again afterwards.
+   *
+   * @param maxSizeBytes the estimated heap the remaining features may use
+   */
+  public void trimToSize(int maxSizeBytes) {
+    cache.trimToSize(maxSizeBytes);
+  }
+
+  /**
+   * Evicts all assets, they are loaded again when they're next asked for. Callers still holding features
+   * keep them.
+   */
+  public void evictAll() {
+    cache.evictAll();
+  }
+
+  private final ComponentCallbacks2 memoryCallbacks = new ComponentCallbacks2() {
+    @Override
+    public void onTrimMemory(int level) {
+      if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+        evictAll();
+      } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+        trimToSize(cache.size() / 2);
+      }
+    }
+
+    @Override
+    public void onLowMemory() {
+      evictAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+      // Parsed assets don't depend on the configuration
+    }
+  };
+
+  /**
+   * Estimates the heap used by a parsed FeatureCollection. Only the relative size matters for eviction,
+   * so this counts objects with fixed per object costs instead of measuring them.
+   */
+  static int estimateSize(@NonNull FeatureCollection featureCollection) {
+    long size = LIST_BYTES;
+    List<Feature> features = featureCollection.features();
+    if (features != null) {
+      for (Feature feature : features) {
+        size += FEATURE_BYTES + estimateSize(feature.geometry()) + estimateSize(feature.properties());
+      }
+    }
+    return (int) Math.min(Integer.MAX_VALUE, Math.max(1, size));
+  }
+
+  private static long estimateSize(@Nullable Geometry geometry) {
+    if (geometry == null) {
+      return 0;
+    }
+    if (geometry instanceof GeometryCollection) {
+      long size = LIST_BYTES;
+      for (Geometry child : ((GeometryCollection) geometry).geometries()) {
+        size += estimateSize(child);
+      }
+      return size;
+    }
+    if (geometry instanceof CoordinateContainer) {
+      return estimateCoordinates(((CoordinateContainer) geometry).coordinates());
+    }
+    return POINT_BYTES;
+  }
+
+  private static long estimateCoordinates(Object coordinates) {
+    if (coordinates instanceof Point) {
+      return POINT_BYTES;
+    }
+    long size = LIST_BYTES;
+    if (coordinates instanceof List) {
+      List<?> list = (List<?>) coordinates;
+      if (!list.isEmpty() && list.get(0) instanceof Point) {
+        return size + list.size() * (long) (POINT_BYTES + 4);
+      }
+      for (Object child : list) {
+        size += estimateCoordinates(child);
+      }
+    }
+    return size;
+  }
+
+  private static long estimateSize(@Nullable JsonElement element) {
+    if (element == null || element.isJsonNull()) {
+      return 0;
+    }
+    if (element.isJsonObject()) {
+      long size = JSON_VALUE_BYTES;
+      for (Map.Entry<String, JsonElement> entry : ((JsonObject) element).entrySet()) {
+        size += JSON_ENTRY_BYTES + STRING_BYTES + 2L * entry.getKey().length() + estimateSize(entry.getValue());
+      }
+      return size;
+    }
+    if (element.isJsonArray()) {
+      long size = LIST_BYTES;
+      for (JsonElement child : (JsonArray) element) {
+        size += 4 + estimateSize(child);
+      }
+      return size;
+    }
+    JsonPrimitive primitive = (JsonPrimitive) element;
+    if (primitive.isString()) {
+      return JSON_VALUE_BYTES + STRING_BYTES + 2L * primitive.getAsString().length();
+    }
+    return 2 * JSON_VALUE_BYTES;
+  }
+}
@@ -0,0 +1,306 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.mapbox.geojson.Feature;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.mapbox.mapboxandroiddemo.utils.GeoJsonBinaryDecoder.TAG_DOUBLE;
+import static com.mapbox.mapboxandroiddemo.utils.GeoJsonBinaryDecoder.TAG_FALSE;
+import static com.mapbox.mapboxandroiddemo.utils.GeoJsonBinaryDecoder.TAG_INTEGER;
+import static com.mapbox.mapboxandroiddemo.utils.GeoJsonBinaryDecoder.TAG_JSON;
+import static com.mapbox.mapboxandroiddemo.utils.GeoJsonBinaryDecoder.TAG_NULL;
+import static com.mapbox.mapboxandroiddemo.utils.GeoJsonBinaryDecoder.TAG_STRING;
+import static com.mapbox.mapboxandroiddemo.utils.GeoJsonBinaryDecoder.TAG_TRUE;
+
+/**
+ * The properties of a list of features, stored by column instead of as a JsonObject per feature.
+ * <p>
+ * Properties stay in the encoding of compiled GeoJSON assets, see {@link GeoJsonBinaryDecoder}, with
+ * keys and string values interned in a single string table. A column is decoded the first time one of
+ * its values is read, into a tag and a 64 bit value per feature, so a key which is never read costs
+ * nothing beyond its encoded bytes. The getters behave like the ones of {@link Feature}.
+ * </p>
+ */
+public final class FeaturePropertyTable {
+
+  private static final byte TAG_ABSENT = -1;
+
+  private final ByteBuffer buffer;
+  private final String[] strings;
+  private final int[] offsets;
+  private final Map<String, Column> columns = new HashMap<>();
+
+  FeaturePropertyTable(ByteBuffer buffer, String[] strings, int[] offsets) {
+    this.buffer = buffer;
+    this.strings = strings;
+    this.offsets = offsets;
+  }
+
+  /**
+   * Move the properties of parsed features into a table.
+   *
+   * @param features the features, in the order they are indexed by in the table
+   * @return the properties of the features
+   */
+  @NonNull
+  public static FeaturePropertyTable fromFeatures(@NonNull List<Feature> features) {
+    Map<String, Integer> stringIds = new LinkedHashMap<>();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    int[] offsets = new int[features.size()];
+    for (int i = 0; i < offsets.length; i++) {
+      offsets[i] = out.size();
+      JsonObject properties = features.get(i).properties();
+      if (properties == null) {
+        writeVarint(out, 0);
+        continue;
+      }
+      writeVarint(out, properties.size());
+      for (Map.Entry<String, JsonElement> entry : properties.entrySet()) {
+        writeVarint(out, intern(stringIds, entry.getKey()));
+        writeValue(out, stringIds, entry.getValue());
+      }
+    }
+    String[] strings = stringIds.keySet().toArray(new String[stringIds.size()]);
+    return new FeaturePropertyTable(ByteBuffer.wrap(out.toByteArray()), strings, offsets);
+  }
+
+  /**
+   * @return the number of features
+   */
+  public int size() {
+    return offsets.length;
+  }
+
+  public boolean hasProperty(int feature, @NonNull String key) {
+    return getColumn(key).tags[feature] != TAG_ABSENT;
+  }
+
+  /**
+   * @param feature the index of the feature
+   * @param key     the name of the property
+   * @return the value, or null if the feature doesn't have the property
+   */
+  @Nullable
+  public JsonElement getProperty(int feature, @NonNull String key) {
+    Column column = getColumn(key);
+    return toJsonElement(column.tags[feature], column.values[feature]);
+  }
+
+  @Nullable
+  private JsonElement toJsonElement(byte tag, long value) {
+    switch (tag) {
+      case TAG_NULL:
+        return JsonNull.INSTANCE;
+      case TAG_FALSE:
+        return new JsonPrimitive(false);
+      case TAG_TRUE:
+        return new JsonPrimitive(true);
+      case TAG_STRING:
+        return new JsonPrimitive(strings[(int) value]);
+      case TAG_DOUBLE:
+        return new JsonPrimitive(Double.longBitsToDouble(value));
+      case TAG_INTEGER:
+        return new JsonPrimitive(value);
+      case TAG_JSON:
+        return new JsonParser().parse(strings[(int) value]);
+      default:
+        return null;
+    }
+  }
+
+  @Nullable
+  public String getStringProperty(int feature, @NonNull String key) {
+    Column column = getColumn(key);
+    if (column.tags[feature] == TAG_STRING) {
+      // Shared with the string table instead of being copied for every read
+      return strings[(int) column.values[feature]];
+    }
+    JsonElement element = getProperty(feature, key);
+    return element != null ? element.getAsString() : null;
+  }
+
+  @Nullable
+  public Number getNumberProperty(int feature, @NonNull String key) {
+    Column column = getColumn(key);
+    if (column.tags[feature] == TAG_DOUBLE) {
+      return Double.longBitsToDouble(column.values[feature]);
+    } else if (column.tags[feature] == TAG_INTEGER) {
+      return column.values[feature];
+    }
+    JsonElement element = getProperty(feature, key);
+    return element != null ? element.getAsNumber() : null;
+  }
+
+  @Nullable
+  public Boolean getBooleanProperty(int feature, @NonNull String key) {
+    JsonElement element = getProperty(feature, key);
+    return element != null ? element.getAsBoolean() : null;
+  }
+
+  /**
+   * Build a JsonObject with all properties of a feature, for code which needs Feature properties.
+   *
+   * @param feature the index of the feature
+   * @return a new object, which isn't backed by the table
+   */
+  @NonNull
+  public JsonObject toJsonObject(int feature) {
+    JsonObject properties = new JsonObject();
+    ByteBuffer reader = reader(offsets[feature]);
+    int propertyCount = (int) GeoJsonBinaryDecoder.readVarLong(reader);
+    for (int i = 0; i < propertyCount; i++) {
+      String key = strings[(int) GeoJsonBinaryDecoder.readVarLong(reader)];
+      byte tag = reader.get();
+      properties.add(key, toJsonElement(tag, readValue(reader, tag)));
+    }
+    return properties;
+  }
+
+  private synchronized Column getColumn(String key) {
+    Column column = columns.get(key);
+    if (column == null) {
+      column = decodeColumn(key);
+      columns.put(key, column);
+    }
+    return column;
+  }
+
+  private Column decodeColumn(String key) {
+    Column column = new Column(offsets.length);
+    // Keys are interned, so once the id of the key is known the other features only compare ids
+    int keyId = -1;
+    ByteBuffer reader = reader(0);
+    for (int feature = 0; feature < offsets.length; feature++) {
+      reader.position(offsets[feature]);
+      int propertyCount = (int) GeoJsonBinaryDecoder.readVarLong(reader);
+      for (int i = 0; i < propertyCount; i++) {
+        int id = (int) GeoJsonBinaryDecoder.readVarLong(reader);
+        if (id != keyId && (keyId >= 0 || !key.equals(strings[id]))) {
+          skipValue(reader);
+          continue;
+        }
+        keyId = id;
+        byte tag = reader.get();
+        column.tags[feature] = tag;
+        column.values[feature] = readValue(reader, tag);
+        break;
+      }
+    }
+    return column;
+  }
+
+  /**
+   * Reads the value following a tag as the bits of a double, an integer or the index of a string.
+   */
+  private static long readValue(ByteBuffer reader, byte tag) {
+    if (tag == TAG_DOUBLE) {
+      return reader.getLong();
+    } else if (tag == TAG_INTEGER) {
+      return GeoJsonBinaryDecoder.readSignedVarint(reader);
+    } else if (tag == TAG_STRING || tag == TAG_JSON) {
+      return GeoJsonBinaryDecoder.readVarLong(reader);
+    }
+    return 0;
+  }
+
+  private ByteBuffer reader(int position) {
+    // Each read gets its own position, the shared buffer is never moved
+    ByteBuffer reader = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    reader.position(position);
+    return reader;
+  }
+
+  private static void skipValue(ByteBuffer reader) {
+    try {
+      GeoJsonBinaryDecoder.skipValue(reader);
+    } catch (IOException exception) {
+      // The buffer was validated when the table was created
+      throw new IllegalStateException("Corrupt property table", exception);
+    }
+  }
+
+  private static int intern(Map<String, Integer> stringIds, String string) {
+    Integer id = stringIds.get(string);
+    if (id == null) {
+      id = stringIds.size();
+      stringIds.put(string, id);
+    }
+    return id;
+  }
+
+  private static void writeValue(ByteArrayOutputStream out, Map<String, Integer> stringIds,
+                                 @Nullable JsonElement value) {
+    if (value == null || value.isJsonNull()) {
+      out.write(TAG_NULL);
+    } else if (!value.isJsonPrimitive()) {
+      out.write(TAG_JSON);
+      writeVarint(out, intern(stringIds, value.toString()));
+    } else if (value.getAsJsonPrimitive().isBoolean()) {
+      out.write(value.getAsBoolean() ? TAG_TRUE : TAG_FALSE);
+    } else if (value.getAsJsonPrimitive().isString()) {
+      out.write(TAG_STRING);
+      writeVarint(out, intern(stringIds, value.getAsString()));
+    } else {
+      // Numbers written without a fraction or exponent are integers, like the asset compiler decides
+      String number = value.getAsString();
+      Long integer = null;
+      if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+        try {
+          integer = Long.parseLong(number);
+        } catch (NumberFormatException tooLarge) {
+          // Stored as a double below
+        }
+      }
+      if (integer != null) {
+        out.write(TAG_INTEGER);
+        writeVarint(out, (integer << 1) ^ (integer >> 63));
+      } else {
+        out.write(TAG_DOUBLE);
+        long bits = Double.doubleToLongBits(value.getAsDouble());
+        for (int i = 0; i < 8; i++) {
+          out.write((int) (bits >>> (8 * i)));
+        }
+      }
+    }
+  }
+
+  private static void writeVarint(ByteArrayOutputStream out, long value) {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  /**
+   * The decoded values of one key: the tag of each feature's value, and the value itself as the bits of
+   * a double, an integer or the index of a string.
+   */
+  private static final class Column {
+
+    final byte[] tags;
+    final long[] values;
+
+    Column(int size) {
+      tags = new byte[size];
+      values = new long[size];
+      Arrays.fill(tags, TAG_ABSENT);
+    }
+  }
+}
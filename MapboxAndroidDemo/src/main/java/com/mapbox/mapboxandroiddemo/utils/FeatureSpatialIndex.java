@@ -0,0 +1,564 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.Geometry;
+import com.mapbox.geojson.GeometryCollection;
+import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.MultiLineString;
+import com.mapbox.geojson.MultiPoint;
+import com.mapbox.geojson.MultiPolygon;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.Polygon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Static spatial index over the features of a FeatureCollection, for answering taps and other lookups
+ * without going through the renderer.
+ * <p>
+ * The index is an R-tree bulk loaded with the Sort-Tile-Recursive algorithm and packed into primitive
+ * arrays, the coordinates of all geometries are copied into a single array as well. Unlike
+ * queryRenderedFeatures it also finds features which are filtered out, hidden or outside the viewport.
+ * Coordinates are longitude and latitude, distances are approximated on an equirectangular projection
+ * around the queried point, which is exact enough for the distances a finger covers.
+ * </p>
+ */
+public final class FeatureSpatialIndex {
+
+  private static final int NODE_SIZE = 16;
+  private static final double METERS_PER_DEGREE = 6371008.8 * Math.PI / 180;
+
+  private static final byte PART_POINTS = 0;
+  private static final byte PART_LINE = 1;
+  private static final byte PART_RING = 2;
+
+  private final List<Feature> features;
+
+  // The tree, level by level starting with one leaf per feature, four bounding box values per node
+  private final double[] boxes;
+  private final int[] indices;
+  private final int[] levelBounds;
+  private final int leafCount;
+
+  // Geometry of each feature, split into parts (a run of points, a line or a polygon ring)
+  private final int[] featurePartStart;
+  private final int[] partStart;
+  private final byte[] partType;
+  private final double[] coordinates;
+
+  private FeatureSpatialIndex(List<Feature> features, double[] boxes, int[] indices, int[] levelBounds,
+                              int leafCount, int[] featurePartStart, int[] partStart, byte[] partType,
+                              double[] coordinates) {
+    this.features = features;
+    this.boxes = boxes;
+    this.indices = indices;
+    this.levelBounds = levelBounds;
+    this.leafCount = leafCount;
+    this.featurePartStart = featurePartStart;
+    this.partStart = partStart;
+    this.partType = partType;
+    this.coordinates = coordinates;
+  }
+
+  /**
+   * Build the index. Features without a geometry are left out. This walks all coordinates, call it off
+   * the main thread for large collections.
+   *
+   * @param featureCollection the features to index, which must not be modified afterwards
+   * @return the index
+   */
+  @NonNull
+  public static FeatureSpatialIndex build(@NonNull FeatureCollection featureCollection) {
+    return new Builder(featureCollection).build();
+  }
+
+  /**
+   * @return the number of indexed features
+   */
+  public int size() {
+    return leafCount;
+  }
+
+  /**
+   * Find the features whose bounding box intersects a bounding box.
+   *
+   * @param west  the western longitude of the box
+   * @param south the southern latitude of the box
+   * @param east  the eastern longitude of the box
+   * @param north the northern latitude of the box
+   * @return the features found, in no particular order
+   */
+  @NonNull
+  public List<Feature> queryBoundingBox(double west, double south, double east, double north) {
+    int[] found = search(west, south, east, north);
+    List<Feature> result = new ArrayList<>(found.length);
+    for (int featureIndex : found) {
+      result.add(features.get(featureIndex));
+    }
+    return result;
+  }
+
+  /**
+   * Find the polygons, or multi polygons, which contain a point.
+   *
+   * @param longitude the longitude of the point
+   * @param latitude  the latitude of the point
+   * @return the features found, in no particular order
+   */
+  @NonNull
+  public List<Feature> queryContaining(double longitude, double latitude) {
+    List<Feature> result = new ArrayList<>();
+    for (int featureIndex : search(longitude, latitude, longitude, latitude)) {
+      if (contains(featureIndex, longitude, latitude)) {
+        result.add(features.get(featureIndex));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Find the feature closest to a point. The distance to a polygon containing the point is zero.
+   *
+   * @param longitude          the longitude of the point
+   * @param latitude           the latitude of the point
+   * @param maxDistanceMeters  features further away than this are ignored
+   * @return the closest feature, or null if there's none within the distance
+   */
+  @Nullable
+  public Feature queryNearest(double longitude, double latitude, double maxDistanceMeters) {
+    if (leafCount == 0) {
+      return null;
+    }
+    double scaleX = Math.cos(Math.toRadians(latitude)) * METERS_PER_DEGREE;
+    NodeQueue queue = new NodeQueue();
+    queue.push(indices.length - 1, 0);
+
+    Feature nearest = null;
+    double nearestDistance = maxDistanceMeters;
+    while (!queue.isEmpty() && queue.peekDistance() <= nearestDistance) {
+      int node = queue.pop();
+      if (node < leafCount) {
+        int featureIndex = indices[node];
+        double distance = distanceToFeature(featureIndex, longitude, latitude, scaleX);
+        if (distance <= nearestDistance) {
+          nearestDistance = distance;
+          nearest = features.get(featureIndex);
+        }
+        continue;
+      }
+      int end = childEnd(node);
+      for (int child = indices[node]; child < end; child++) {
+        double distance = distanceToBox(child, longitude, latitude, scaleX);
+        if (distance <= nearestDistance) {
+          queue.push(child, distance);
+        }
+      }
+    }
+    return nearest;
+  }
+
+  /**
+   * Returns the indices of the features whose bounding box intersects the given one.
+   */
+  private int[] search(double west, double south, double east, double north) {
+    if (leafCount == 0) {
+      return new int[0];
+    }
+    int[] found = new int[16];
+    int foundCount = 0;
+    // A depth first traversal never holds more than the children of one node per level
+    int[] stack = new int[levelBounds.length * NODE_SIZE];
+    int stackSize = 0;
+    stack[stackSize++] = indices.length - 1;
+    while (stackSize > 0) {
+      int node = stack[--stackSize];
+      if (!intersects(node, west, south, east, north)) {
+        continue;
+      }
+      if (node < leafCount) {
+        if (foundCount == found.length) {
+          found = Arrays.copyOf(found, foundCount * 2);
+        }
+        found[foundCount++] = indices[node];
+      } else {
+        int end = childEnd(node);
+        for (int child = indices[node]; child < end; child++) {
+          stack[stackSize++] = child;
+        }
+      }
+    }
+    return Arrays.copyOf(found, foundCount);
+  }
+
+  private int childEnd(int node) {
+    int level = 0;
+    while (node >= levelBounds[level]) {
+      level++;
+    }
+    return Math.min(indices[node] + NODE_SIZE, levelBounds[level - 1]);
+  }
+
+  private boolean intersects(int node, double west, double south, double east, double north) {
+    int box = node * 4;
+    return boxes[box] <= east && boxes[box + 1] <= north && boxes[box + 2] >= west && boxes[box + 3] >= south;
+  }
+
+  private double distanceToBox(int node, double longitude, double latitude, double scaleX) {
+    int box = node * 4;
+    double dx = Math.max(0, Math.max(boxes[box] - longitude, longitude - boxes[box + 2])) * scaleX;
+    double dy = Math.max(0, Math.max(boxes[box + 1] - latitude, latitude - boxes[box + 3])) * METERS_PER_DEGREE;
+    return Math.sqrt(dx * dx + dy * dy);
+  }
+
+  /**
+   * Even-odd test over all rings of the feature, which handles holes and multi polygons alike.
+   */
+  private boolean contains(int featureIndex, double longitude, double latitude) {
+    boolean inside = false;
+    for (int part = featurePartStart[featureIndex]; part < featurePartStart[featureIndex + 1]; part++) {
+      if (partType[part] != PART_RING) {
+        continue;
+      }
+      int end = partStart[part + 1];
+      for (int i = partStart[part], j = end - 1; i < end; j = i++) {
+        double xi = coordinates[i * 2];
+        double yi = coordinates[i * 2 + 1];
+        double xj = coordinates[j * 2];
+        double yj = coordinates[j * 2 + 1];
+        if ((yi > latitude) != (yj > latitude)
+          && longitude < (xj - xi) * (latitude - yi) / (yj - yi) + xi) {
+          inside = !inside;
+        }
+      }
+    }
+    return inside;
+  }
+
+  private double distanceToFeature(int featureIndex, double longitude, double latitude, double scaleX) {
+    if (contains(featureIndex, longitude, latitude)) {
+      return 0;
+    }
+    double min = Double.POSITIVE_INFINITY;
+    for (int part = featurePartStart[featureIndex]; part < featurePartStart[featureIndex + 1]; part++) {
+      int start = partStart[part];
+      int end = partStart[part + 1];
+      if (partType[part] == PART_POINTS || end - start == 1) {
+        for (int i = start; i < end; i++) {
+          double dx = (coordinates[i * 2] - longitude) * scaleX;
+          double dy = (coordinates[i * 2 + 1] - latitude) * METERS_PER_DEGREE;
+          min = Math.min(min, dx * dx + dy * dy);
+        }
+      } else {
+        for (int i = start + 1; i < end; i++) {
+          min = Math.min(min, squaredSegmentDistance(i - 1, i, longitude, latitude, scaleX));
+        }
+      }
+    }
+    return Math.sqrt(min);
+  }
+
+  private double squaredSegmentDistance(int from, int to, double longitude, double latitude, double scaleX) {
+    double x = (coordinates[from * 2] - longitude) * scaleX;
+    double y = (coordinates[from * 2 + 1] - latitude) * METERS_PER_DEGREE;
+    double dx = (coordinates[to * 2] - coordinates[from * 2]) * scaleX;
+    double dy = (coordinates[to * 2 + 1] - coordinates[from * 2 + 1]) * METERS_PER_DEGREE;
+    double lengthSquared = dx * dx + dy * dy;
+    if (lengthSquared > 0) {
+      // Project the queried point, which is the origin here, onto the segment
+      double t = Math.max(0, Math.min(1, -(x * dx + y * dy) / lengthSquared));
+      x += dx * t;
+      y += dy * t;
+    }
+    return x * x + y * y;
+  }
+
+  /**
+   * Binary min heap of nodes keyed by distance, for the best first nearest neighbour search.
+   */
+  private static final class NodeQueue {
+
+    private int[] nodes = new int[64];
+    private double[] distances = new double[64];
+    private int size;
+
+    boolean isEmpty() {
+      return size == 0;
+    }
+
+    double peekDistance() {
+      return distances[0];
+    }
+
+    void push(int node, double distance) {
+      if (size == nodes.length) {
+        nodes = Arrays.copyOf(nodes, size * 2);
+        distances = Arrays.copyOf(distances, size * 2);
+      }
+      int position = size++;
+      while (position > 0) {
+        int parent = (position - 1) / 2;
+        if (distances[parent] <= distance) {
+          break;
+        }
+        nodes[position] = nodes[parent];
+        distances[position] = distances[parent];
+        position = parent;
+      }
+      nodes[position] = node;
+      distances[position] = distance;
+    }
+
+    int pop() {
+      int top = nodes[0];
+      size--;
+      int node = nodes[size];
+      double distance = distances[size];
+      int position = 0;
+      while (true) {
+        int child = position * 2 + 1;
+        if (child >= size) {
+          break;
+        }
+        if (child + 1 < size && distances[child + 1] < distances[child]) {
+          child++;
+        }
+        if (distances[child] >= distance) {
+          break;
+        }
+        nodes[position] = nodes[child];
+        distances[position] = distances[child];
+        position = child;
+      }
+      nodes[position] = node;
+      distances[position] = distance;
+      return top;
+    }
+  }
+
+  private static final class Builder {
+
+    private final List<Feature> features;
+    private final List<Feature> indexedFeatures = new ArrayList<>();
+
+    private int[] featurePartStart;
+    private int[] partStart = new int[64];
+    private byte[] partType = new byte[64];
+    private int partCount;
+    private double[] coordinates = new double[256];
+    private int pointCount;
+
+    private double[] boxes;
+    private int[] indices;
+
+    Builder(FeatureCollection featureCollection) {
+      List<Feature> features = featureCollection.features();
+      this.features = features != null ? features : new ArrayList<Feature>();
+    }
+
+    FeatureSpatialIndex build() {
+      featurePartStart = new int[features.size() + 1];
+      List<double[]> featureBoxes = new ArrayList<>(features.size());
+      for (Feature feature : features) {
+        int firstPart = partCount;
+        int firstPoint = pointCount;
+        addGeometry(feature.geometry());
+        if (pointCount == firstPoint) {
+          // Nothing to index, drop any empty parts
+          partCount = firstPart;
+          continue;
+        }
+        featurePartStart[indexedFeatures.size()] = firstPart;
+        indexedFeatures.add(feature);
+        featureBoxes.add(boundingBox(firstPoint, pointCount));
+      }
+      int leafCount = indexedFeatures.size();
+      featurePartStart[leafCount] = partCount;
+      partStart = Arrays.copyOf(partStart, partCount + 1);
+      partStart[partCount] = pointCount;
+
+      // Count the nodes of all levels up to the root
+      int nodeCount = leafCount;
+      for (int levelSize = leafCount; levelSize > 1; ) {
+        levelSize = (levelSize + NODE_SIZE - 1) / NODE_SIZE;
+        nodeCount += levelSize;
+      }
+      boxes = new double[nodeCount * 4];
+      indices = new int[nodeCount];
+      List<Integer> levelBounds = new ArrayList<>();
+
+      for (int i = 0; i < leafCount; i++) {
+        System.arraycopy(featureBoxes.get(i), 0, boxes, i * 4, 4);
+        indices[i] = i;
+      }
+      sortTileRecursive(0, leafCount);
+      levelBounds.add(leafCount);
+
+      int levelStart = 0;
+      int levelEnd = leafCount;
+      while (levelEnd - levelStart > 1) {
+        int parent = levelEnd;
+        for (int child = levelStart; child < levelEnd; child += NODE_SIZE) {
+          int childEnd = Math.min(child + NODE_SIZE, levelEnd);
+          double west = Double.POSITIVE_INFINITY;
+          double south = Double.POSITIVE_INFINITY;
+          double east = Double.NEGATIVE_INFINITY;
+          double north = Double.NEGATIVE_INFINITY;
+          for (int i = child; i < childEnd; i++) {
+            west = Math.min(west, boxes[i * 4]);
+            south = Math.min(south, boxes[i * 4 + 1]);
+            east = Math.max(east, boxes[i * 4 + 2]);
+            north = Math.max(north, boxes[i * 4 + 3]);
+          }
+          boxes[parent * 4] = west;
+          boxes[parent * 4 + 1] = south;
+          boxes[parent * 4 + 2] = east;
+          boxes[parent * 4 + 3] = north;
+          indices[parent] = child;
+          parent++;
+        }
+        // Each parent keeps the start of its children, so the parents themselves can be reordered
+        sortTileRecursive(levelEnd, parent);
+        levelStart = levelEnd;
+        levelEnd = parent;
+        levelBounds.add(levelEnd);
+      }
+
+      int[] bounds = new int[levelBounds.size()];
+      for (int i = 0; i < bounds.length; i++) {
+        bounds[i] = levelBounds.get(i);
+      }
+      return new FeatureSpatialIndex(indexedFeatures, boxes, indices, bounds, leafCount,
+        Arrays.copyOf(featurePartStart, leafCount + 1), partStart, Arrays.copyOf(partType, partCount),
+        Arrays.copyOf(coordinates, pointCount * 2));
+    }
+
+    /**
+     * Orders the nodes in [start, end) into vertical slices by the x of their center, and each slice
+     * by the y of their center, so that runs of NODE_SIZE nodes cover compact tiles.
+     */
+    private void sortTileRecursive(int start, int end) {
+      int count = end - start;
+      int parentCount = (count + NODE_SIZE - 1) / NODE_SIZE;
+      int sliceSize = (int) Math.ceil(Math.sqrt(parentCount)) * NODE_SIZE;
+      sortByCenter(start, end - 1, 0);
+      for (int slice = start; slice < end; slice += sliceSize) {
+        sortByCenter(slice, Math.min(slice + sliceSize, end) - 1, 1);
+      }
+    }
+
+    private double center(int node, int axis) {
+      return boxes[node * 4 + axis] + boxes[node * 4 + axis + 2];
+    }
+
+    private void sortByCenter(int left, int right, int axis) {
+      while (left < right) {
+        double pivot = center((left + right) >>> 1, axis);
+        int i = left;
+        int j = right;
+        while (i <= j) {
+          while (center(i, axis) < pivot) {
+            i++;
+          }
+          while (center(j, axis) > pivot) {
+            j--;
+          }
+          if (i <= j) {
+            swap(i++, j--);
+          }
+        }
+        // Recurse into the smaller half to keep the stack shallow
+        if (j - left < right - i) {
+          sortByCenter(left, j, axis);
+          left = i;
+        } else {
+          sortByCenter(i, right, axis);
+          right = j;
+        }
+      }
+    }
+
+    private void swap(int a, int b) {
+      for (int k = 0; k < 4; k++) {
+        double box = boxes[a * 4 + k];
+        boxes[a * 4 + k] = boxes[b * 4 + k];
+        boxes[b * 4 + k] = box;
+      }
+      int index = indices[a];
+      indices[a] = indices[b];
+      indices[b] = index;
+    }
+
+    private double[] boundingBox(int firstPoint, int endPoint) {
+      double[] box = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+        Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+      for (int i = firstPoint; i < endPoint; i++) {
+        box[0] = Math.min(box[0], coordinates[i * 2]);
+        box[1] = Math.min(box[1], coordinates[i * 2 + 1]);
+        box[2] = Math.max(box[2], coordinates[i * 2]);
+        box[3] = Math.max(box[3], coordinates[i * 2 + 1]);
+      }
+      return box;
+    }
+
+    private void addGeometry(@Nullable Geometry geometry) {
+      if (geometry instanceof Point) {
+        startPart(PART_POINTS);
+        addPoint((Point) geometry);
+      } else if (geometry instanceof MultiPoint) {
+        addPart(PART_POINTS, ((MultiPoint) geometry).coordinates());
+      } else if (geometry instanceof LineString) {
+        addPart(PART_LINE, ((LineString) geometry).coordinates());
+      } else if (geometry instanceof MultiLineString) {
+        for (List<Point> line : ((MultiLineString) geometry).coordinates()) {
+          addPart(PART_LINE, line);
+        }
+      } else if (geometry instanceof Polygon) {
+        for (List<Point> ring : ((Polygon) geometry).coordinates()) {
+          addPart(PART_RING, ring);
+        }
+      } else if (geometry instanceof MultiPolygon) {
+        for (List<List<Point>> polygon : ((MultiPolygon) geometry).coordinates()) {
+          for (List<Point> ring : polygon) {
+            addPart(PART_RING, ring);
+          }
+        }
+      } else if (geometry instanceof GeometryCollection) {
+        for (Geometry child : ((GeometryCollection) geometry).geometries()) {
+          addGeometry(child);
+        }
+      }
+    }
+
+    private void addPart(byte type, List<Point> points) {
+      startPart(type);
+      for (Point point : points) {
+        addPoint(point);
+      }
+    }
+
+    private void startPart(byte type) {
+      if (partCount + 1 >= partStart.length) {
+        partStart = Arrays.copyOf(partStart, partStart.length * 2);
+        partType = Arrays.copyOf(partType, partType.length * 2);
+      }
+      partStart[partCount] = pointCount;
+      partType[partCount] = type;
+      partCount++;
+    }
+
+    private void addPoint(Point point) {
+      if (pointCount * 2 + 2 > coordinates.length) {
+        coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+      }
+      coordinates[pointCount * 2] = point.longitude();
+      coordinates[pointCount * 2 + 1] = point.latitude();
+      pointCount++;
+    }
+  }
+}
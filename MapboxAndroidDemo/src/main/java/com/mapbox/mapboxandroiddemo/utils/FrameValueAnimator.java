@@ -0,0 +1,150 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.view.Choreographer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Eases a single value towards a target which can change at any time, one step per display frame.
+ * <p>
+ * Steps are driven by the {@link Choreographer}, so they line up with vsync and nothing is queued while the
+ * main thread is busy: when frames are skipped, the next step covers all the time which passed. The
+ * listener is called at most once per frame, and only while the value is still moving. Before Jelly Bean,
+ * which has no Choreographer, frames are approximated with a handler.
+ * </p>
+ */
+@MainThread
+public final class FrameValueAnimator {
+
+  private static final long FALLBACK_FRAME_MS = 16;
+  private static final float SETTLE_DISTANCE = 0.001f;
+
+  private final long timeConstantNanos;
+  private final Listener listener;
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  private Object frameCallback;
+
+  private float value;
+  private float target;
+  private long lastFrameTimeNanos;
+  private boolean running;
+
+  /**
+   * Called with every new value.
+   */
+  public interface Listener {
+    void onValueChanged(float value);
+  }
+
+  private final Runnable fallbackFrame = new Runnable() {
+    @Override
+    public void run() {
+      doFrame(TimeUnit.MILLISECONDS.toNanos(SystemClock.uptimeMillis()));
+    }
+  };
+
+  /**
+   * @param timeConstantMillis the time the value takes to cover about two thirds of the distance to its target
+   * @param listener           called with the value on every frame it changes
+   */
+  public FrameValueAnimator(long timeConstantMillis, @NonNull Listener listener) {
+    this.timeConstantNanos = TimeUnit.MILLISECONDS.toNanos(timeConstantMillis);
+    this.listener = listener;
+  }
+
+  /**
+   * Start easing towards a new target, from wherever the value is now.
+   */
+  public void setTarget(float target) {
+    this.target = target;
+    if (!running && Math.abs(target - value) > SETTLE_DISTANCE) {
+      running = true;
+      lastFrameTimeNanos = 0;
+      postFrame();
+    }
+  }
+
+  /**
+   * Stop easing and set the value straight away. The listener is called with it.
+   */
+  public void jumpTo(float value) {
+    cancel();
+    this.value = value;
+    this.target = value;
+    listener.onValueChanged(value);
+  }
+
+  /**
+   * Stop easing, the value stays where it is.
+   */
+  public void cancel() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+      Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback) frameCallback);
+    } else {
+      handler.removeCallbacks(fallbackFrame);
+    }
+  }
+
+  public float getValue() {
+    return value;
+  }
+
+  private void doFrame(long frameTimeNanos) {
+    if (!running) {
+      return;
+    }
+    if (lastFrameTimeNanos == 0) {
+      // The first frame only marks the start time, there's no elapsed time to step by yet
+      lastFrameTimeNanos = frameTimeNanos;
+      postFrame();
+      return;
+    }
+    long elapsedNanos = frameTimeNanos - lastFrameTimeNanos;
+    lastFrameTimeNanos = frameTimeNanos;
+
+    float remaining = (target - value) * (float) Math.exp(-(double) elapsedNanos / timeConstantNanos);
+    if (Math.abs(remaining) <= SETTLE_DISTANCE) {
+      value = target;
+      running = false;
+    } else {
+      value = target - remaining;
+      postFrame();
+    }
+    listener.onValueChanged(value);
+  }
+
+  private void postFrame() {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+      Choreographer.getInstance().postFrameCallback(getFrameCallback());
+    } else {
+      handler.postDelayed(fallbackFrame, FALLBACK_FRAME_MS);
+    }
+  }
+
+  /**
+   * Created lazily, so the Choreographer class isn't referenced on versions without it.
+   */
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+  private Choreographer.FrameCallback getFrameCallback() {
+    if (frameCallback == null) {
+      frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+          FrameValueAnimator.this.doFrame(frameTimeNanos);
+        }
+      };
+    }
+    return (Choreographer.FrameCallback) frameCallback;
+  }
+}
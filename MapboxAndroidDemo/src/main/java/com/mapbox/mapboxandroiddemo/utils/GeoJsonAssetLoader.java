@@ -0,0 +1,107 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mapbox.geojson.FeatureCollection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+
+import timber.log.Timber;
+
+/**
+ * Loads GeoJSON files from the assets folder.
+ * <p>
+ * The asset stream is parsed by {@link GeoJsonReader} token by token straight into a {@link FeatureCollection},
+ * so the file is never copied into an intermediate byte array or String before being parsed.
+ * </p>
+ */
+public final class GeoJsonAssetLoader {
+
+  private GeoJsonAssetLoader() {
+    // No instances
+  }
+
+  /**
+   * Load and parse a GeoJSON file from the assets folder.
+   * <p>
+   * If the build packaged a compiled variant of the file, that one is decoded with {@link GeoJsonBinaryDecoder}
+   * instead of parsing the GeoJSON text.
+   * </p>
+   *
+   * @param context  the context used to access the assets
+   * @param filename the name of the GeoJSON file in the assets folder
+   * @return the parsed features, or null if the file could not be read
+   */
+  @Nullable
+  public static FeatureCollection loadFeatureCollection(@NonNull Context context, @NonNull String filename) {
+    return loadFeatureCollection(context, filename, null);
+  }
+
+  /**
+   * Load and parse a GeoJSON file from the assets folder, keeping only the properties which are read,
+   * for example by the layers showing the features. Other properties are skipped while parsing.
+   *
+   * @param context      the context used to access the assets
+   * @param filename     the name of the GeoJSON file in the assets folder
+   * @param propertyKeys the properties to keep on the features, or null to keep all of them
+   * @return the parsed features, or null if the file could not be read
+   */
+  @Nullable
+  public static FeatureCollection loadFeatureCollection(@NonNull Context context, @NonNull String filename,
+                                                        @Nullable Set<String> propertyKeys) {
+    InputStream inputStream = null;
+    try {
+      FeatureCollection compiled = GeoJsonBinaryDecoder.loadCompiledAsset(context, filename, propertyKeys);
+      if (compiled != null) {
+        return compiled;
+      }
+      inputStream = context.getAssets().open(filename);
+      return GeoJsonReader.readFeatureCollection(inputStream, propertyKeys);
+    } catch (IOException | RuntimeException exception) {
+      Timber.e(exception, "Exception loading GeoJSON asset %s", filename);
+      return null;
+    } finally {
+      closeQuietly(inputStream);
+    }
+  }
+
+  /**
+   * Load the properties of the features of a GeoJSON file in the assets folder into a
+   * {@link FeaturePropertyTable}, indexed in the same order as the features.
+   *
+   * @param context  the context used to access the assets
+   * @param filename the name of the GeoJSON file in the assets folder
+   * @return the properties, or null if the file could not be read
+   */
+  @Nullable
+  public static FeaturePropertyTable loadPropertyTable(@NonNull Context context, @NonNull String filename) {
+    InputStream inputStream = null;
+    try {
+      FeaturePropertyTable compiled = GeoJsonBinaryDecoder.loadCompiledPropertyTable(context, filename);
+      if (compiled != null) {
+        return compiled;
+      }
+      inputStream = context.getAssets().open(filename);
+      return FeaturePropertyTable.fromFeatures(GeoJsonReader.readFeatureCollection(inputStream).features());
+    } catch (IOException | RuntimeException exception) {
+      Timber.e(exception, "Exception loading GeoJSON asset %s", filename);
+      return null;
+    } finally {
+      closeQuietly(inputStream);
+    }
+  }
+
+  private static void closeQuietly(@Nullable InputStream inputStream) {
+    if (inputStream != null) {
+      try {
+        inputStream.close();
+      } catch (IOException ignored) {
+        // Nothing left to do with a stream that failed to close
+      }
+    }
+  }
+}
@@ -0,0 +1,497 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.Geometry;
+import com.mapbox.geojson.GeometryCollection;
+import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.MultiLineString;
+import com.mapbox.geojson.MultiPoint;
+import com.mapbox.geojson.MultiPolygon;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.Polygon;
+
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decodes GeoJSON assets which were compiled to the binary .gjb format at build time.
+ * <p>
+ * The format is produced by the compileGeoJsonAssets Gradle task, see gradle/script-geojson-binary.gradle
+ * for its layout. Coordinates are stored as delta and varint encoded integers and all property keys,
+ * string values and ids are shared through a single string table, which makes the files several times
+ * smaller than the GeoJSON they were compiled from and avoids any text parsing at runtime.
+ * </p>
+ */
+public final class GeoJsonBinaryDecoder {
+
+  /**
+   * Extension of compiled assets, replacing the .geojson extension of the source file.
+   */
+  public static final String FILE_EXTENSION = ".gjb";
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int VERSION = 1;
+
+  // Property value tags, shared with FeaturePropertyTable
+  static final int TAG_NULL = 0;
+  static final int TAG_FALSE = 1;
+  static final int TAG_TRUE = 2;
+  static final int TAG_STRING = 3;
+  static final int TAG_DOUBLE = 4;
+  static final int TAG_INTEGER = 5;
+  static final int TAG_JSON = 6;
+
+  private static final int GEOMETRY_NULL = 0;
+  private static final int GEOMETRY_POINT = 1;
+  private static final int GEOMETRY_MULTI_POINT = 2;
+  private static final int GEOMETRY_LINE_STRING = 3;
+  private static final int GEOMETRY_MULTI_LINE_STRING = 4;
+  private static final int GEOMETRY_POLYGON = 5;
+  private static final int GEOMETRY_MULTI_POLYGON = 6;
+  private static final int GEOMETRY_COLLECTION = 7;
+
+  private final ByteBuffer buffer;
+  private final Set<String> propertyKeys;
+  private final long[] previous = new long[3];
+  private double scale;
+  private String[] strings;
+  private byte[] stringBytes = new byte[64];
+
+  private GeoJsonBinaryDecoder(ByteBuffer buffer, @Nullable Set<String> propertyKeys) {
+    this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+    this.propertyKeys = propertyKeys;
+  }
+
+  /**
+   * Read and decode the compiled variant of a GeoJSON asset.
+   *
+   * @param context  the context used to access the assets
+   * @param filename the name of the original GeoJSON file in the assets folder
+   * @return the decoded features, or null if no compiled variant of the asset is packaged
+   * @throws IOException if the compiled asset can't be read or is corrupt
+   */
+  @Nullable
+  public static FeatureCollection loadCompiledAsset(@NonNull Context context, @NonNull String filename)
+    throws IOException {
+    return loadCompiledAsset(context, filename, null);
+  }
+
+  /**
+   * Read and decode the compiled variant of a GeoJSON asset, keeping only some of the properties.
+   *
+   * @param context      the context used to access the assets
+   * @param filename     the name of the original GeoJSON file in the assets folder
+   * @param propertyKeys the properties to keep on the features, or null to keep all of them
+   * @return the decoded features, or null if no compiled variant of the asset is packaged
+   * @throws IOException if the compiled asset can't be read or is corrupt
+   */
+  @Nullable
+  public static FeatureCollection loadCompiledAsset(@NonNull Context context, @NonNull String filename,
+                                                    @Nullable Set<String> propertyKeys) throws IOException {
+    ByteBuffer buffer = readCompiledAsset(context, filename);
+    return buffer != null ? decode(buffer, propertyKeys) : null;
+  }
+
+  /**
+   * Read the compiled variant of a GeoJSON asset and index the properties of its features.
+   *
+   * @param context  the context used to access the assets
+   * @param filename the name of the original GeoJSON file in the assets folder
+   * @return the properties, or null if no compiled variant of the asset is packaged
+   * @throws IOException if the compiled asset can't be read or is corrupt
+   */
+  @Nullable
+  public static FeaturePropertyTable loadCompiledPropertyTable(@NonNull Context context, @NonNull String filename)
+    throws IOException {
+    ByteBuffer buffer = readCompiledAsset(context, filename);
+    return buffer != null ? decodePropertyTable(buffer) : null;
+  }
+
+  /**
+   * Read the whole compiled variant of a GeoJSON asset. The files are packaged uncompressed, so they can be opened
+   * as file descriptors and read straight into an array of their size.
+   */
+  @Nullable
+  private static ByteBuffer readCompiledAsset(Context context, String filename) throws IOException {
+    AssetFileDescriptor descriptor;
+    try {
+      descriptor = context.getAssets().openFd(getCompiledAssetName(filename));
+    } catch (FileNotFoundException notCompiled) {
+      return null;
+    }
+
+    // Closing the stream closes the descriptor
+    InputStream inputStream = descriptor.createInputStream();
+    try {
+      byte[] bytes = new byte[(int) descriptor.getLength()];
+      int offset = 0;
+      while (offset < bytes.length) {
+        int count = inputStream.read(bytes, offset, bytes.length - offset);
+        if (count == -1) {
+          throw new EOFException("Compiled asset of " + filename + " ended after " + offset + " bytes");
+        }
+        offset += count;
+      }
+      return ByteBuffer.wrap(bytes);
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  /**
+   * Returns the asset name the compiled variant of a GeoJSON asset is packaged under.
+   *
+   * @param filename the name of the original GeoJSON file
+   * @return the name of the compiled file
+   */
+  @NonNull
+  public static String getCompiledAssetName(@NonNull String filename) {
+    int extensionIndex = filename.lastIndexOf('.');
+    return (extensionIndex < 0 ? filename : filename.substring(0, extensionIndex)) + FILE_EXTENSION;
+  }
+
+  /**
+   * Decode compiled GeoJSON, starting at the current position of the buffer.
+   *
+   * @param buffer the compiled GeoJSON
+   * @return the decoded features
+   * @throws IOException if the buffer doesn't contain valid compiled GeoJSON
+   */
+  @NonNull
+  public static FeatureCollection decode(@NonNull ByteBuffer buffer) throws IOException {
+    return decode(buffer, null);
+  }
+
+  /**
+   * Decode compiled GeoJSON, starting at the current position of the buffer. Properties which aren't
+   * kept are skipped without being decoded.
+   *
+   * @param buffer       the compiled GeoJSON
+   * @param propertyKeys the properties to keep on the features, or null to keep all of them
+   * @return the decoded features
+   * @throws IOException if the buffer doesn't contain valid compiled GeoJSON
+   */
+  @NonNull
+  public static FeatureCollection decode(@NonNull ByteBuffer buffer, @Nullable Set<String> propertyKeys)
+    throws IOException {
+    try {
+      return new GeoJsonBinaryDecoder(buffer, propertyKeys).readFeatureCollection();
+    } catch (RuntimeException exception) {
+      // Buffer underflows and bad indices all mean the same thing to callers
+      throw new IOException("Corrupt compiled GeoJSON", exception);
+    }
+  }
+
+  /**
+   * Index the properties of compiled GeoJSON, starting at the current position of the buffer. Only the
+   * position of the properties of each feature is read, geometries are skipped and values are decoded
+   * when they are accessed.
+   *
+   * @param buffer the compiled GeoJSON, which must not be modified afterwards
+   * @return the properties of all features
+   * @throws IOException if the buffer doesn't contain valid compiled GeoJSON
+   */
+  @NonNull
+  public static FeaturePropertyTable decodePropertyTable(@NonNull ByteBuffer buffer) throws IOException {
+    try {
+      return new GeoJsonBinaryDecoder(buffer, null).readPropertyTable();
+    } catch (RuntimeException exception) {
+      throw new IOException("Corrupt compiled GeoJSON", exception);
+    }
+  }
+
+  private FeatureCollection readFeatureCollection() throws IOException {
+    int featureCount = readHeader();
+    List<Feature> features = new ArrayList<>(featureCount);
+    for (int i = 0; i < featureCount; i++) {
+      features.add(readFeature());
+    }
+    return FeatureCollection.fromFeatures(features);
+  }
+
+  private FeaturePropertyTable readPropertyTable() throws IOException {
+    int featureCount = readHeader();
+    int[] offsets = new int[featureCount];
+    for (int i = 0; i < featureCount; i++) {
+      readVarint();
+      offsets[i] = buffer.position();
+      int propertyCount = readVarint();
+      for (int property = 0; property < propertyCount; property++) {
+        readVarint();
+        skipValue(buffer);
+      }
+      skipGeometry();
+    }
+    return new FeaturePropertyTable(buffer, strings, offsets);
+  }
+
+  /**
+   * Reads everything up to the features and returns their number.
+   */
+  private int readHeader() throws IOException {
+    if (buffer.get() != 'G' || buffer.get() != 'J' || buffer.get() != 'B') {
+      throw new IOException("Not a compiled GeoJSON file");
+    }
+    int version = buffer.get();
+    if (version != VERSION) {
+      throw new IOException("Unsupported compiled GeoJSON version " + version);
+    }
+    scale = Math.pow(10, readVarint());
+
+    strings = new String[readVarint()];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = readString();
+    }
+    return readVarint();
+  }
+
+  private Feature readFeature() throws IOException {
+    int id = readVarint();
+    int propertyCount = readVarint();
+    JsonObject properties = new JsonObject();
+    for (int i = 0; i < propertyCount; i++) {
+      String key = strings[readVarint()];
+      if (propertyKeys == null || propertyKeys.contains(key)) {
+        readValue(properties, key);
+      } else {
+        skipValue(buffer);
+      }
+    }
+    Geometry geometry = readGeometry();
+    return Feature.fromGeometry(geometry, properties, id == 0 ? null : strings[id - 1]);
+  }
+
+  private void readValue(JsonObject properties, String key) throws IOException {
+    int tag = buffer.get();
+    switch (tag) {
+      case TAG_NULL:
+        properties.add(key, JsonNull.INSTANCE);
+        break;
+      case TAG_FALSE:
+        properties.addProperty(key, false);
+        break;
+      case TAG_TRUE:
+        properties.addProperty(key, true);
+        break;
+      case TAG_STRING:
+        properties.addProperty(key, strings[readVarint()]);
+        break;
+      case TAG_DOUBLE:
+        properties.addProperty(key, buffer.getDouble());
+        break;
+      case TAG_INTEGER:
+        properties.add(key, new JsonPrimitive(readSignedVarint()));
+        break;
+      case TAG_JSON:
+        properties.add(key, new JsonParser().parse(strings[readVarint()]));
+        break;
+      default:
+        throw new IOException("Unknown property tag " + tag);
+    }
+  }
+
+  /**
+   * Moves the buffer past a tagged property value.
+   */
+  static void skipValue(ByteBuffer buffer) throws IOException {
+    int tag = buffer.get();
+    switch (tag) {
+      case TAG_NULL:
+      case TAG_FALSE:
+      case TAG_TRUE:
+        break;
+      case TAG_STRING:
+      case TAG_INTEGER:
+      case TAG_JSON:
+        readVarLong(buffer);
+        break;
+      case TAG_DOUBLE:
+        buffer.position(buffer.position() + 8);
+        break;
+      default:
+        throw new IOException("Unknown property tag " + tag);
+    }
+  }
+
+  private void skipGeometry() throws IOException {
+    int type = buffer.get();
+    if (type == GEOMETRY_NULL) {
+      return;
+    }
+    if (type == GEOMETRY_COLLECTION) {
+      int count = readVarint();
+      for (int i = 0; i < count; i++) {
+        skipGeometry();
+      }
+      return;
+    }
+    int dimensions = buffer.get();
+    switch (type) {
+      case GEOMETRY_POINT:
+        skipVarints(dimensions);
+        break;
+      case GEOMETRY_MULTI_POINT:
+      case GEOMETRY_LINE_STRING:
+        skipVarints(readVarint() * dimensions);
+        break;
+      case GEOMETRY_MULTI_LINE_STRING:
+      case GEOMETRY_POLYGON:
+        skipRings(dimensions);
+        break;
+      case GEOMETRY_MULTI_POLYGON:
+        int polygonCount = readVarint();
+        for (int i = 0; i < polygonCount; i++) {
+          skipRings(dimensions);
+        }
+        break;
+      default:
+        throw new IOException("Unknown geometry type " + type);
+    }
+  }
+
+  private void skipRings(int dimensions) {
+    int ringCount = readVarint();
+    for (int i = 0; i < ringCount; i++) {
+      skipVarints(readVarint() * dimensions);
+    }
+  }
+
+  private void skipVarints(int count) {
+    for (int i = 0; i < count; i++) {
+      while ((buffer.get() & 0x80) != 0) {
+        // Continuation bytes
+      }
+    }
+  }
+
+  @Nullable
+  private Geometry readGeometry() throws IOException {
+    int type = buffer.get();
+    if (type == GEOMETRY_NULL) {
+      return null;
+    }
+    if (type == GEOMETRY_COLLECTION) {
+      int count = readVarint();
+      List<Geometry> geometries = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        geometries.add(readGeometry());
+      }
+      return GeometryCollection.fromGeometries(geometries);
+    }
+
+    int dimensions = buffer.get();
+    previous[0] = 0;
+    previous[1] = 0;
+    previous[2] = 0;
+    switch (type) {
+      case GEOMETRY_POINT:
+        return readPoint(dimensions);
+      case GEOMETRY_MULTI_POINT:
+        return MultiPoint.fromLngLats(readPoints(dimensions));
+      case GEOMETRY_LINE_STRING:
+        return LineString.fromLngLats(readPoints(dimensions));
+      case GEOMETRY_MULTI_LINE_STRING:
+        return MultiLineString.fromLngLats(readRings(dimensions));
+      case GEOMETRY_POLYGON:
+        return Polygon.fromLngLats(readRings(dimensions));
+      case GEOMETRY_MULTI_POLYGON:
+        int polygonCount = readVarint();
+        List<List<List<Point>>> polygons = new ArrayList<>(polygonCount);
+        for (int i = 0; i < polygonCount; i++) {
+          polygons.add(readRings(dimensions));
+        }
+        return MultiPolygon.fromLngLats(polygons);
+      default:
+        throw new IOException("Unknown geometry type " + type);
+    }
+  }
+
+  private List<List<Point>> readRings(int dimensions) {
+    int ringCount = readVarint();
+    List<List<Point>> rings = new ArrayList<>(ringCount);
+    for (int i = 0; i < ringCount; i++) {
+      rings.add(readPoints(dimensions));
+    }
+    return rings;
+  }
+
+  private List<Point> readPoints(int dimensions) {
+    int pointCount = readVarint();
+    List<Point> points = new ArrayList<>(pointCount);
+    for (int i = 0; i < pointCount; i++) {
+      points.add(readPoint(dimensions));
+    }
+    return points;
+  }
+
+  private Point readPoint(int dimensions) {
+    double longitude = readCoordinate(0);
+    double latitude = readCoordinate(1);
+    if (dimensions > 2) {
+      return Point.fromLngLat(longitude, latitude, readCoordinate(2));
+    }
+    return Point.fromLngLat(longitude, latitude);
+  }
+
+  private double readCoordinate(int dimension) {
+    previous[dimension] += readSignedVarint();
+    // Dividing by the power of ten gives the double closest to the stored decimal value
+    return previous[dimension] / scale;
+  }
+
+  private String readString() {
+    int length = readVarint();
+    if (stringBytes.length < length) {
+      stringBytes = new byte[Math.max(length, stringBytes.length * 2)];
+    }
+    buffer.get(stringBytes, 0, length);
+    return new String(stringBytes, 0, length, UTF_8);
+  }
+
+  private int readVarint() {
+    return (int) readVarLong();
+  }
+
+  private long readSignedVarint() {
+    return readSignedVarint(buffer);
+  }
+
+  private long readVarLong() {
+    return readVarLong(buffer);
+  }
+
+  static long readSignedVarint(ByteBuffer buffer) {
+    long value = readVarLong(buffer);
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  static long readVarLong(ByteBuffer buffer) {
+    long value = 0;
+    int shift = 0;
+    byte current;
+    do {
+      current = buffer.get();
+      value |= (long) (current & 0x7F) << shift;
+      shift += 7;
+    } while ((current & 0x80) != 0);
+    return value;
+  }
+}
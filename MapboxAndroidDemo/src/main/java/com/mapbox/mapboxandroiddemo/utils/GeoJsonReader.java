@@ -0,0 +1,304 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.Geometry;
+import com.mapbox.geojson.GeometryCollection;
+import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.MultiLineString;
+import com.mapbox.geojson.MultiPoint;
+import com.mapbox.geojson.MultiPolygon;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.Polygon;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parses GeoJSON streams token by token straight into a {@link FeatureCollection}, without copying the
+ * stream into an intermediate byte array or String and without building a JSON tree first.
+ * <p>
+ * This class doesn't depend on the Android framework, see {@link GeoJsonAssetLoader} for loading assets.
+ * </p>
+ */
+public final class GeoJsonReader {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final String KEY_TYPE = "type";
+  private static final String KEY_FEATURES = "features";
+  private static final String KEY_GEOMETRY = "geometry";
+  private static final String KEY_GEOMETRIES = "geometries";
+  private static final String KEY_PROPERTIES = "properties";
+  private static final String KEY_COORDINATES = "coordinates";
+  private static final String KEY_ID = "id";
+
+  private static final String TYPE_FEATURE_COLLECTION = "FeatureCollection";
+  private static final String TYPE_FEATURE = "Feature";
+
+  private GeoJsonReader() {
+    // No instances
+  }
+
+  /**
+   * Parse a GeoJSON stream into a {@link FeatureCollection}.
+   * <p>
+   * A single Feature or a bare Geometry at the root is wrapped in a collection. The stream is not closed.
+   * </p>
+   *
+   * @param inputStream UTF-8 encoded GeoJSON
+   * @return the parsed features
+   * @throws IOException if the stream can't be read or isn't valid GeoJSON
+   */
+  @NonNull
+  public static FeatureCollection readFeatureCollection(@NonNull InputStream inputStream) throws IOException {
+    return readFeatureCollection(inputStream, null);
+  }
+
+  /**
+   * Parse a GeoJSON stream into a {@link FeatureCollection}, keeping only some of the properties. Other
+   * properties are skipped without building their values.
+   *
+   * @param inputStream  UTF-8 encoded GeoJSON
+   * @param propertyKeys the properties to keep on the features, or null to keep all of them
+   * @return the parsed features
+   * @throws IOException if the stream can't be read or isn't valid GeoJSON
+   */
+  @NonNull
+  public static FeatureCollection readFeatureCollection(@NonNull InputStream inputStream,
+                                                        @Nullable Set<String> propertyKeys) throws IOException {
+    JsonReader reader = new JsonReader(new InputStreamReader(inputStream, UTF_8));
+    List<Feature> features = new ArrayList<>();
+    String type = null;
+    Geometry rootGeometry = null;
+    JsonObject rootProperties = null;
+    String rootId = null;
+    Object rootCoordinates = null;
+    List<Geometry> rootGeometries = null;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      switch (name) {
+        case KEY_TYPE:
+          type = reader.nextString();
+          break;
+        case KEY_FEATURES:
+          reader.beginArray();
+          while (reader.hasNext()) {
+            features.add(readFeature(reader, propertyKeys));
+          }
+          reader.endArray();
+          break;
+        case KEY_GEOMETRY:
+          rootGeometry = readGeometry(reader);
+          break;
+        case KEY_PROPERTIES:
+          rootProperties = readProperties(reader, propertyKeys);
+          break;
+        case KEY_ID:
+          rootId = readId(reader);
+          break;
+        case KEY_COORDINATES:
+          rootCoordinates = readCoordinates(reader);
+          break;
+        case KEY_GEOMETRIES:
+          rootGeometries = readGeometries(reader);
+          break;
+        default:
+          reader.skipValue();
+          break;
+      }
+    }
+    reader.endObject();
+
+    if (TYPE_FEATURE_COLLECTION.equals(type)) {
+      return FeatureCollection.fromFeatures(features);
+    }
+    Feature rootFeature;
+    if (TYPE_FEATURE.equals(type)) {
+      rootFeature = Feature.fromGeometry(rootGeometry,
+        rootProperties != null ? rootProperties : new JsonObject(), rootId);
+    } else {
+      rootFeature = Feature.fromGeometry(buildGeometry(type, rootCoordinates, rootGeometries));
+    }
+    return FeatureCollection.fromFeature(rootFeature);
+  }
+
+  private static Feature readFeature(JsonReader reader, @Nullable Set<String> propertyKeys) throws IOException {
+    Geometry geometry = null;
+    JsonObject properties = null;
+    String id = null;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      switch (name) {
+        case KEY_GEOMETRY:
+          geometry = readGeometry(reader);
+          break;
+        case KEY_PROPERTIES:
+          properties = readProperties(reader, propertyKeys);
+          break;
+        case KEY_ID:
+          id = readId(reader);
+          break;
+        default:
+          reader.skipValue();
+          break;
+      }
+    }
+    reader.endObject();
+    return Feature.fromGeometry(geometry, properties != null ? properties : new JsonObject(), id);
+  }
+
+  @Nullable
+  private static Geometry readGeometry(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+
+    // The members of a geometry may appear in any order, so the coordinates are collected first
+    // and only turned into a typed geometry once the type is known.
+    String type = null;
+    Object coordinates = null;
+    List<Geometry> geometries = null;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      switch (name) {
+        case KEY_TYPE:
+          type = reader.nextString();
+          break;
+        case KEY_COORDINATES:
+          coordinates = readCoordinates(reader);
+          break;
+        case KEY_GEOMETRIES:
+          geometries = readGeometries(reader);
+          break;
+        default:
+          reader.skipValue();
+          break;
+      }
+    }
+    reader.endObject();
+    return buildGeometry(type, coordinates, geometries);
+  }
+
+  private static List<Geometry> readGeometries(JsonReader reader) throws IOException {
+    List<Geometry> geometries = new ArrayList<>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      geometries.add(readGeometry(reader));
+    }
+    reader.endArray();
+    return geometries;
+  }
+
+  /**
+   * Reads a coordinates member. Positions are returned as {@link Point}s, every other level of
+   * nesting as a {@link List}.
+   */
+  private static Object readCoordinates(JsonReader reader) throws IOException {
+    reader.beginArray();
+    if (reader.peek() == JsonToken.NUMBER) {
+      double longitude = reader.nextDouble();
+      double latitude = reader.nextDouble();
+      Point point;
+      if (reader.hasNext()) {
+        point = Point.fromLngLat(longitude, latitude, reader.nextDouble());
+        while (reader.hasNext()) {
+          reader.skipValue();
+        }
+      } else {
+        point = Point.fromLngLat(longitude, latitude);
+      }
+      reader.endArray();
+      return point;
+    }
+
+    List<Object> children = new ArrayList<>();
+    while (reader.hasNext()) {
+      children.add(readCoordinates(reader));
+    }
+    reader.endArray();
+    return children;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Geometry buildGeometry(String type, Object coordinates, List<Geometry> geometries)
+    throws IOException {
+    if (type == null) {
+      throw new IOException("GeoJSON object is missing its type member");
+    }
+    switch (type) {
+      case "Point":
+        return (Point) coordinates;
+      case "MultiPoint":
+        return MultiPoint.fromLngLats((List<Point>) coordinates);
+      case "LineString":
+        return LineString.fromLngLats((List<Point>) coordinates);
+      case "MultiLineString":
+        return MultiLineString.fromLngLats((List<List<Point>>) coordinates);
+      case "Polygon":
+        return Polygon.fromLngLats((List<List<Point>>) coordinates);
+      case "MultiPolygon":
+        return MultiPolygon.fromLngLats((List<List<List<Point>>>) coordinates);
+      case "GeometryCollection":
+        return GeometryCollection.fromGeometries(geometries);
+      default:
+        throw new IOException("Unsupported GeoJSON geometry type " + type);
+    }
+  }
+
+  @Nullable
+  private static JsonObject readProperties(JsonReader reader, @Nullable Set<String> propertyKeys)
+    throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+    if (propertyKeys == null) {
+      JsonElement element = new JsonParser().parse(reader);
+      return element.getAsJsonObject();
+    }
+    JsonObject properties = new JsonObject();
+    JsonParser parser = new JsonParser();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (propertyKeys.contains(name)) {
+        properties.add(name, parser.parse(reader));
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return properties;
+  }
+
+  @Nullable
+  private static String readId(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+    // Ids may be numbers as well as strings, JsonReader hands back both as a String.
+    return reader.nextString();
+  }
+}
@@ -0,0 +1,313 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import timber.log.Timber;
+
+/**
+ * Loads GeoJSON assets for map sources on background threads and hands them to the main thread when
+ * they are ready.
+ * <p>
+ * All loaders share a small pool of background threads. Requests are handed to the pool once the main
+ * thread is done with the message they were made in, highest priority first, so the loads an activity
+ * requests in onCreate or onMapReady start in the order of their priority. Requests which wait for a
+ * thread are ordered the same way: by priority, then in the order they were made. Assets are loaded
+ * through {@link FeatureCollectionCache}, so their features are shared and must not be modified.
+ * </p>
+ * <p>
+ * Loads which fail are logged and reported to the {@link OnLoadFailedListener}, if there is one.
+ * </p>
+ * <p>
+ * Create one loader per activity and call {@link #cancel()} from onDestroy. Pending loads are then
+ * dropped and no listener is called after the activity is gone.
+ * </p>
+ */
+public final class GeoJsonSourceLoader {
+
+  public static final int PRIORITY_HIGH = 0;
+  public static final int PRIORITY_NORMAL = 1;
+
+  private static final int THREAD_COUNT =
+    Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1));
+  private static final long KEEP_ALIVE_SECONDS = 30;
+
+  private static final AtomicLong SEQUENCE = new AtomicLong();
+  private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+  private final Context context;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final List<LoadTask<?>> pendingTasks = new ArrayList<>();
+  // Requested since the last dispatch, handed to the pool together so the highest priority starts first
+  private final List<LoadTask<?>> undispatchedTasks = new ArrayList<>();
+  private final Runnable dispatchTasks = new Runnable() {
+    @Override
+    public void run() {
+      Collections.sort(undispatchedTasks);
+      // With all threads started every task goes through the priority queue, instead of the first ones
+      // being handed to new threads directly
+      EXECUTOR.prestartAllCoreThreads();
+      for (LoadTask<?> task : undispatchedTasks) {
+        EXECUTOR.execute(task);
+      }
+      undispatchedTasks.clear();
+    }
+  };
+  private OnLoadFailedListener onLoadFailedListener;
+  private boolean cancelled;
+
+  /**
+   * Called on the main thread when an asset can't be loaded or prepared.
+   */
+  public interface OnLoadFailedListener {
+    void onLoadFailed(@NonNull String filename);
+  }
+
+  /**
+   * Turns the features of a loaded asset into whatever the map needs, on the background thread which
+   * loaded them.
+   *
+   * @param <T> the type of the prepared result
+   */
+  public interface Preparation<T> {
+    @NonNull
+    T prepare(@NonNull FeatureCollection featureCollection);
+  }
+
+  /**
+   * Called on the main thread with the result of a {@link Preparation}.
+   *
+   * @param <T> the type of the prepared result
+   */
+  public interface OnPreparedListener<T> {
+    void onPrepared(@NonNull T result);
+  }
+
+  public GeoJsonSourceLoader(@NonNull Context context) {
+    this.context = context.getApplicationContext();
+  }
+
+  /**
+   * @param listener called when a load of this loader fails, or null
+   */
+  @MainThread
+  public void setOnLoadFailedListener(@Nullable OnLoadFailedListener listener) {
+    this.onLoadFailedListener = listener;
+  }
+
+  /**
+   * Load a GeoJSON asset in the background and set it as the data of a source once it's ready. The
+   * source can be added to the map, and layers using it, before its data has loaded.
+   *
+   * @param source   the source to set the features on
+   * @param filename the name of the GeoJSON file in the assets folder
+   * @param priority {@link #PRIORITY_HIGH} or {@link #PRIORITY_NORMAL}
+   */
+  @MainThread
+  public void loadInto(@NonNull GeoJsonSource source, @NonNull String filename, int priority) {
+    loadInto(source, filename, priority, (String[]) null);
+  }
+
+  /**
+   * Load a GeoJSON asset in the background with only the properties the layers of a source read, and set
+   * it as the data of the source once it's ready.
+   *
+   * @param source       the source to set the features on
+   * @param filename     the name of the GeoJSON file in the assets folder
+   * @param priority     {@link #PRIORITY_HIGH} or {@link #PRIORITY_NORMAL}
+   * @param propertyKeys the properties to keep, or {@link FeatureCollectionCache#NO_PROPERTIES}
+   */
+  @MainThread
+  public void loadInto(@NonNull final GeoJsonSource source, @NonNull String filename, int priority,
+                       String... propertyKeys) {
+    load(filename, priority, new Preparation<FeatureCollection>() {
+      @NonNull
+      @Override
+      public FeatureCollection prepare(@NonNull FeatureCollection featureCollection) {
+        return featureCollection;
+      }
+    }, new OnPreparedListener<FeatureCollection>() {
+      @Override
+      public void onPrepared(@NonNull FeatureCollection featureCollection) {
+        source.setGeoJson(featureCollection);
+      }
+    }, propertyKeys);
+  }
+
+  /**
+   * Load a GeoJSON asset and prepare its features in the background. The listener isn't called if the
+   * asset can't be read or the loader is cancelled first, failures go to the {@link OnLoadFailedListener}.
+   *
+   * @param filename    the name of the GeoJSON file in the assets folder
+   * @param priority    {@link #PRIORITY_HIGH} or {@link #PRIORITY_NORMAL}
+   * @param preparation run on the background thread with the loaded features
+   * @param listener    called on the main thread with the prepared result
+   * @param <T>         the type of the prepared result
+   */
+  @MainThread
+  public <T> void load(@NonNull String filename, int priority, @NonNull Preparation<T> preparation,
+                       @NonNull OnPreparedListener<T> listener) {
+    load(filename, priority, preparation, listener, (String[]) null);
+  }
+
+  /**
+   * Load a GeoJSON asset with only some of its properties and prepare its features in the background.
+   * The listener isn't called if the asset can't be read or the loader is cancelled first, failures go to
+   * the {@link OnLoadFailedListener}.
+   *
+   * @param filename     the name of the GeoJSON file in the assets folder
+   * @param priority     {@link #PRIORITY_HIGH} or {@link #PRIORITY_NORMAL}
+   * @param preparation  run on the background thread with the loaded features
+   * @param listener     called on the main thread with the prepared result
+   * @param propertyKeys the properties to keep, or {@link FeatureCollectionCache#NO_PROPERTIES}
+   * @param <T>          the type of the prepared result
+   */
+  @MainThread
+  public <T> void load(@NonNull String filename, int priority, @NonNull Preparation<T> preparation,
+                       @NonNull OnPreparedListener<T> listener, String... propertyKeys) {
+    if (cancelled) {
+      return;
+    }
+    LoadTask<T> task = new LoadTask<>(filename, propertyKeys, priority, preparation, listener);
+    pendingTasks.add(task);
+    if (undispatchedTasks.isEmpty()) {
+      mainHandler.post(dispatchTasks);
+    }
+    undispatchedTasks.add(task);
+  }
+
+  /**
+   * Drop all loads which haven't been delivered yet. Loads which are already running finish in the
+   * background, but their result is discarded. The loader can't be used after it's cancelled.
+   */
+  @MainThread
+  public void cancel() {
+    cancelled = true;
+    for (LoadTask<?> task : pendingTasks) {
+      task.cancelled = true;
+      EXECUTOR.remove(task);
+    }
+    pendingTasks.clear();
+    undispatchedTasks.clear();
+    mainHandler.removeCallbacksAndMessages(null);
+  }
+
+  private static ThreadPoolExecutor createExecutor() {
+    ThreadFactory threadFactory = new ThreadFactory() {
+      private final AtomicInteger threadNumber = new AtomicInteger();
+
+      @Override
+      public Thread newThread(@NonNull final Runnable runnable) {
+        return new Thread(new Runnable() {
+          @Override
+          public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+          }
+        }, "GeoJsonSourceLoader-" + threadNumber.incrementAndGet());
+      }
+    };
+    // The queue is unbounded, so the pool never grows past its core size
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT,
+      KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(), threadFactory);
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private final class LoadTask<T> implements Runnable, Comparable<LoadTask<?>> {
+
+    private final String filename;
+    private final String[] propertyKeys;
+    private final int priority;
+    private final long sequence = SEQUENCE.getAndIncrement();
+    private final Preparation<T> preparation;
+    private final OnPreparedListener<T> listener;
+    private volatile boolean cancelled;
+
+    LoadTask(String filename, String[] propertyKeys, int priority, Preparation<T> preparation,
+             OnPreparedListener<T> listener) {
+      this.filename = filename;
+      this.propertyKeys = propertyKeys;
+      this.priority = priority;
+      this.preparation = preparation;
+      this.listener = listener;
+    }
+
+    @Override
+    public void run() {
+      if (cancelled) {
+        return;
+      }
+      FeatureCollection featureCollection =
+        FeatureCollectionCache.getInstance(context).get(context, filename, propertyKeys);
+      if (cancelled) {
+        return;
+      }
+      if (featureCollection == null) {
+        // GeoJsonAssetLoader logged why
+        postFailure();
+        return;
+      }
+      final T result;
+      try {
+        result = preparation.prepare(featureCollection);
+      } catch (RuntimeException exception) {
+        Timber.e(exception, "Exception preparing GeoJSON asset %s", filename);
+        postFailure();
+        return;
+      }
+      if (cancelled) {
+        return;
+      }
+      mainHandler.post(new Runnable() {
+        @Override
+        public void run() {
+          if (!cancelled) {
+            pendingTasks.remove(LoadTask.this);
+            listener.onPrepared(result);
+          }
+        }
+      });
+    }
+
+    private void postFailure() {
+      mainHandler.post(new Runnable() {
+        @Override
+        public void run() {
+          if (!cancelled) {
+            pendingTasks.remove(LoadTask.this);
+            if (onLoadFailedListener != null) {
+              onLoadFailedListener.onLoadFailed(filename);
+            }
+          }
+        }
+      });
+    }
+
+    @Override
+    public int compareTo(@NonNull LoadTask<?> other) {
+      if (priority != other.priority) {
+        return priority < other.priority ? -1 : 1;
+      }
+      return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+    }
+  }
+}
@@ -0,0 +1,167 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
+import com.mapbox.mapboxsdk.maps.MapboxMap;
+import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Keeps a source filled with the features of the tiles of a {@link GeoJsonTiler} which are on screen.
+ * <p>
+ * While the camera moves, the source is only updated when the zoom level crosses a whole number or
+ * another tile comes into view. Tiles which aren't cached yet are generated on a background thread, the
+ * source keeps showing the previous tiles until all new ones are ready. Lines and polygons which overlap
+ * several tiles are set on the source once.
+ * </p>
+ */
+public final class GeoJsonTileFeeder implements MapboxMap.OnCameraMoveListener {
+
+  // Beyond this, for example when the map is tilted towards the horizon, tiles of a lower zoom level are used
+  private static final int MAX_VISIBLE_TILES = 36;
+
+  private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+    @Override
+    public Thread newThread(@NonNull final Runnable runnable) {
+      return new Thread(new Runnable() {
+        @Override
+        public void run() {
+          Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+          runnable.run();
+        }
+      }, "GeoJsonTileFeeder");
+    }
+  });
+
+  private final GeoJsonTiler tiler;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+  private MapboxMap mapboxMap;
+  private GeoJsonSource source;
+  // The visible tiles as zoom level, first column, first row, last column and last row
+  private int[] requestedTiles;
+  private volatile int[] latestRequestedTiles;
+
+  public GeoJsonTileFeeder(@NonNull GeoJsonTiler tiler) {
+    this.tiler = tiler;
+  }
+
+  /**
+   * Fill a source with the visible tiles and keep it up to date while the camera moves.
+   *
+   * @param mapboxMap the map showing the source
+   * @param source    the source to set the features on
+   */
+  @MainThread
+  public void attach(@NonNull MapboxMap mapboxMap, @NonNull GeoJsonSource source) {
+    detach();
+    this.mapboxMap = mapboxMap;
+    this.source = source;
+    mapboxMap.addOnCameraMoveListener(this);
+    onCameraMove();
+  }
+
+  /**
+   * Stop updating the source. Tiles which are being generated are dropped.
+   */
+  @MainThread
+  public void detach() {
+    if (mapboxMap != null) {
+      mapboxMap.removeOnCameraMoveListener(this);
+      mainHandler.removeCallbacksAndMessages(null);
+      mapboxMap = null;
+      source = null;
+      requestedTiles = null;
+      latestRequestedTiles = null;
+    }
+  }
+
+  @Override
+  public void onCameraMove() {
+    int[] tiles = getVisibleTiles();
+    if (Arrays.equals(tiles, requestedTiles)) {
+      return;
+    }
+    requestedTiles = tiles;
+    latestRequestedTiles = tiles;
+
+    List<Feature> features = tiler.getCachedTiles(tiles[0], tiles[1], tiles[2], tiles[3], tiles[4]);
+    if (features != null) {
+      source.setGeoJson(FeatureCollection.fromFeatures(features));
+    } else {
+      EXECUTOR.execute(new GenerateTask(tiles));
+    }
+  }
+
+  private int[] getVisibleTiles() {
+    LatLngBounds bounds = mapboxMap.getProjection().getVisibleRegion().latLngBounds;
+    double west = ZoomLevelOfDetail.projectX(bounds.getLonWest());
+    double east = ZoomLevelOfDetail.projectX(bounds.getLonEast());
+    if (west > east) {
+      // The view crosses the antimeridian, the features are only tiled on one side of it
+      west = 0;
+      east = 1;
+    }
+    double north = ZoomLevelOfDetail.projectY(bounds.getLatNorth());
+    double south = ZoomLevelOfDetail.projectY(bounds.getLatSouth());
+
+    int zoom = Math.max(0, Math.min(tiler.getMaxZoom(), (int) Math.floor(mapboxMap.getCameraPosition().zoom)));
+    while (true) {
+      int tileCount = 1 << zoom;
+      int[] tiles = {zoom, toTile(west, tileCount), toTile(north, tileCount),
+        toTile(east, tileCount), toTile(south, tileCount)};
+      if (zoom == 0 || (tiles[3] - tiles[1] + 1) * (tiles[4] - tiles[2] + 1) <= MAX_VISIBLE_TILES) {
+        return tiles;
+      }
+      zoom--;
+    }
+  }
+
+  private static int toTile(double coordinate, int tileCount) {
+    return Math.max(0, Math.min(tileCount - 1, (int) Math.floor(coordinate * tileCount)));
+  }
+
+  private final class GenerateTask implements Runnable {
+
+    private final int[] tiles;
+
+    GenerateTask(int[] tiles) {
+      this.tiles = tiles;
+    }
+
+    @Override
+    public void run() {
+      for (int x = tiles[1]; x <= tiles[3]; x++) {
+        for (int y = tiles[2]; y <= tiles[4]; y++) {
+          if (latestRequestedTiles != tiles) {
+            // The camera moved on before these tiles were ready
+            return;
+          }
+          tiler.getTile(tiles[0], x, y);
+        }
+      }
+      // Merges the tiles which were just generated, regenerating any the cache evicted meanwhile
+      final List<Feature> features = tiler.getTiles(tiles[0], tiles[1], tiles[2], tiles[3], tiles[4]);
+      mainHandler.post(new Runnable() {
+        @Override
+        public void run() {
+          if (requestedTiles == tiles) {
+            source.setGeoJson(FeatureCollection.fromFeatures(features));
+          }
+        }
+      });
+    }
+  }
+}
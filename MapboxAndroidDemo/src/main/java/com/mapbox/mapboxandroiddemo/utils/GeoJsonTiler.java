@@ -0,0 +1,310 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.support.v4.util.LruCache;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.mapboxandroiddemo.utils.ZoomLevelOfDetail.ProjectedFeature;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Cuts a FeatureCollection into z/x/y tiles, in the way geojson-vt does, so a map source only needs
+ * the features of the tiles on screen.
+ * <p>
+ * The features are held in a {@link ZoomLevelOfDetail} pyramid, and a tile shows the variant of its zoom
+ * level of each line and polygon, which only keeps the vertices important enough to show there. A tile is
+ * taken from its closest cached ancestor, or from all features. Generated tiles are kept in an LRU cache
+ * bounded by their number of vertices.
+ * </p>
+ * <p>
+ * The tiles on screen are shown together by one source, so unlike geojson-vt only points are clipped to
+ * the tiles. Lines and polygons are kept whole in every tile they overlap, as their cut edges would show
+ * as seams. {@link #getTiles} and {@link #getCachedTiles} merge the tiles of a range and add each of
+ * those lines and polygons once.
+ * </p>
+ */
+public final class GeoJsonTiler {
+
+  /**
+   * Tiles are generated up to this zoom level. Tiles below it are simplified, tiles at it keep all
+   * vertices.
+   */
+  public static final int DEFAULT_MAX_ZOOM = 14;
+
+  private static final int DEFAULT_CACHE_SIZE_IN_VERTICES = 250000;
+
+  private final ZoomLevelOfDetail levelOfDetail;
+  private final int maxZoom;
+  private final LruCache<Long, Tile> tiles;
+
+  private GeoJsonTiler(ZoomLevelOfDetail levelOfDetail, int cacheSizeInVertices) {
+    this.levelOfDetail = levelOfDetail;
+    this.maxZoom = levelOfDetail.getMaxZoom();
+    this.tiles = new LruCache<Long, Tile>(cacheSizeInVertices) {
+      @Override
+      protected int sizeOf(Long key, Tile tile) {
+        return tile.vertexCount;
+      }
+    };
+  }
+
+  /**
+   * Project a FeatureCollection for tiling. This walks all coordinates, call it off the main thread for
+   * large collections.
+   *
+   * @param featureCollection the features to tile
+   * @return the tiler, with the default maximum zoom level and cache size
+   */
+  @NonNull
+  public static GeoJsonTiler build(@NonNull FeatureCollection featureCollection) {
+    return build(featureCollection, DEFAULT_MAX_ZOOM, DEFAULT_CACHE_SIZE_IN_VERTICES);
+  }
+
+  /**
+   * Project a FeatureCollection for tiling. This walks all coordinates, call it off the main thread for
+   * large collections.
+   *
+   * @param featureCollection   the features to tile
+   * @param maxZoom             the deepest zoom level tiles are generated for
+   * @param cacheSizeInVertices the number of vertices kept in the tile cache
+   * @return the tiler
+   */
+  @NonNull
+  public static GeoJsonTiler build(@NonNull FeatureCollection featureCollection, int maxZoom,
+                                   int cacheSizeInVertices) {
+    return new GeoJsonTiler(ZoomLevelOfDetail.build(featureCollection, maxZoom), cacheSizeInVertices);
+  }
+
+  /**
+   * @return the deepest zoom level tiles are generated for
+   */
+  public int getMaxZoom() {
+    return maxZoom;
+  }
+
+  /**
+   * Get the features of a tile, generating it if it isn't cached.
+   *
+   * @param z the zoom level of the tile, at most {@link #getMaxZoom()}
+   * @param x the column of the tile
+   * @param y the row of the tile
+   * @return the features of the tile, in longitude and latitude
+   */
+  @WorkerThread
+  @NonNull
+  public List<Feature> getTile(int z, int x, int y) {
+    return generateTile(z, x, y).features;
+  }
+
+  /**
+   * Get the features of a range of tiles of one zoom level, generating the tiles which aren't cached.
+   * Lines and polygons which overlap several of the tiles are added once.
+   *
+   * @param z    the zoom level of the tiles, at most {@link #getMaxZoom()}
+   * @param minX the first column
+   * @param minY the first row
+   * @param maxX the last column
+   * @param maxY the last row
+   * @return the features of the tiles, in longitude and latitude
+   */
+  @WorkerThread
+  @NonNull
+  public List<Feature> getTiles(int z, int minX, int minY, int maxX, int maxY) {
+    TileMerger merger = new TileMerger();
+    for (int x = minX; x <= maxX; x++) {
+      for (int y = minY; y <= maxY; y++) {
+        merger.add(generateTile(z, x, y));
+      }
+    }
+    return merger.features;
+  }
+
+  /**
+   * Get the features of a range of tiles of one zoom level if all of them are cached. Lines and polygons
+   * which overlap several of the tiles are added once.
+   *
+   * @param z    the zoom level of the tiles
+   * @param minX the first column
+   * @param minY the first row
+   * @param maxX the last column
+   * @param maxY the last row
+   * @return the features of the tiles, or null if any of them hasn't been generated or was evicted
+   */
+  @Nullable
+  public List<Feature> getCachedTiles(int z, int minX, int minY, int maxX, int maxY) {
+    TileMerger merger = new TileMerger();
+    for (int x = minX; x <= maxX; x++) {
+      for (int y = minY; y <= maxY; y++) {
+        Tile tile = tiles.get(toKey(z, x, y));
+        if (tile == null) {
+          return null;
+        }
+        merger.add(tile);
+      }
+    }
+    return merger.features;
+  }
+
+  private Tile generateTile(int z, int x, int y) {
+    if (z < 0 || z > maxZoom) {
+      throw new IllegalArgumentException("Zoom level " + z + " is outside 0 to " + maxZoom);
+    }
+    Tile tile = tiles.get(toKey(z, x, y));
+    if (tile != null) {
+      return tile;
+    }
+
+    // Clipping the closest ancestor gives the same result as clipping everything, with less to clip
+    List<ProjectedFeature> source = levelOfDetail.getFeatures();
+    for (int ancestorZ = z - 1; ancestorZ >= 0; ancestorZ--) {
+      int shift = z - ancestorZ;
+      Tile ancestor = tiles.get(toKey(ancestorZ, x >> shift, y >> shift));
+      if (ancestor != null) {
+        source = ancestor.tileFeatures;
+        break;
+      }
+    }
+
+    double size = 1.0 / (1 << z);
+    List<ProjectedFeature> clipped = clip(source, x * size, (x + 1) * size, 0);
+    clipped = clip(clipped, y * size, (y + 1) * size, 1);
+    tile = new Tile(clipped, levelOfDetail, z);
+    tiles.put(toKey(z, x, y), tile);
+    return tile;
+  }
+
+  /**
+   * Get the features of a tile if it's cached.
+   *
+   * @param z the zoom level of the tile
+   * @param x the column of the tile
+   * @param y the row of the tile
+   * @return the features of the tile, or null if it hasn't been generated or was evicted
+   */
+  @Nullable
+  public List<Feature> getCachedTile(int z, int x, int y) {
+    Tile tile = tiles.get(toKey(z, x, y));
+    return tile != null ? tile.features : null;
+  }
+
+  /**
+   * Drop all generated tiles, they are generated again when needed.
+   */
+  public void evictAll() {
+    tiles.evictAll();
+  }
+
+  private static long toKey(int z, int x, int y) {
+    return ((long) z << 58) | ((long) x << 29) | y;
+  }
+
+
+  /**
+   * Keeps the features between k1 and k2 on one axis, 0 for x and 1 for y. Only points are clipped, lines
+   * and polygons which overlap the range are kept whole.
+   */
+  private static List<ProjectedFeature> clip(List<ProjectedFeature> features, double k1, double k2, int axis) {
+    List<ProjectedFeature> clipped = new ArrayList<>();
+    for (ProjectedFeature feature : features) {
+      double min = feature.bounds[axis];
+      double max = feature.bounds[axis + 2];
+      if (min >= k1 && max < k2) {
+        clipped.add(feature);
+        continue;
+      } else if (max < k1 || min >= k2) {
+        continue;
+      }
+      if (feature.type != ZoomLevelOfDetail.TYPE_POINT) {
+        clipped.add(feature);
+        continue;
+      }
+
+      List<double[]> parts = new ArrayList<>();
+      for (double[] coordinates : feature.parts) {
+        double[] points = clipPoints(coordinates, k1, k2, axis);
+        if (points.length > 0) {
+          parts.add(points);
+        }
+      }
+      if (!parts.isEmpty()) {
+        clipped.add(new ProjectedFeature(feature.feature, feature.type, parts, null));
+      }
+    }
+    return clipped;
+  }
+
+  private static double[] clipPoints(double[] points, double k1, double k2, int axis) {
+    double[] clipped = new double[points.length];
+    int length = 0;
+    for (int i = 0; i < points.length; i += 3) {
+      double value = points[i + axis];
+      // Half open, so points on the edge between two tiles are only in one of them
+      if (value >= k1 && value < k2) {
+        System.arraycopy(points, i, clipped, length, 3);
+        length += 3;
+      }
+    }
+    return Arrays.copyOf(clipped, length);
+  }
+
+
+  /**
+   * A generated tile, with its projected features kept for clipping its descendants.
+   */
+  private static final class Tile {
+
+    final List<ProjectedFeature> tileFeatures;
+    // The feature shown for each projected feature, null where nothing was left after simplifying
+    final Feature[] builtFeatures;
+    final List<Feature> features;
+    final int vertexCount;
+
+    Tile(List<ProjectedFeature> tileFeatures, ZoomLevelOfDetail levelOfDetail, int z) {
+      this.tileFeatures = tileFeatures;
+      builtFeatures = new Feature[tileFeatures.size()];
+      List<Feature> features = new ArrayList<>(tileFeatures.size());
+      int vertexCount = 0;
+      for (int i = 0; i < builtFeatures.length; i++) {
+        ProjectedFeature tileFeature = tileFeatures.get(i);
+        builtFeatures[i] = levelOfDetail.getFeature(tileFeature, z);
+        if (builtFeatures[i] != null) {
+          features.add(builtFeatures[i]);
+        }
+        // Lines and polygons are shared with the pyramid, only the clipped points belong to the tile
+        vertexCount += tileFeature.type == ZoomLevelOfDetail.TYPE_POINT ? tileFeature.vertexCount * 2 : 1;
+      }
+      this.features = Collections.unmodifiableList(features);
+      this.vertexCount = Math.max(1, vertexCount);
+    }
+  }
+
+  /**
+   * Merges tiles of one zoom level. Lines and polygons aren't clipped, so every tile they overlap holds
+   * the same projected feature, and the same variant of it, which is only added the first time. Points are
+   * clipped to exactly one tile and always added.
+   */
+  private static final class TileMerger {
+
+    final List<Feature> features = new ArrayList<>();
+    private final Set<ProjectedFeature> added =
+      Collections.newSetFromMap(new IdentityHashMap<ProjectedFeature, Boolean>());
+
+    void add(Tile tile) {
+      for (int i = 0; i < tile.builtFeatures.length; i++) {
+        Feature feature = tile.builtFeatures[i];
+        if (feature != null && added.add(tile.tileFeatures.get(i))) {
+          features.add(feature);
+        }
+      }
+    }
+  }
+}
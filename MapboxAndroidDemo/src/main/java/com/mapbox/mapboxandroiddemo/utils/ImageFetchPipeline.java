@@ -0,0 +1,385 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import com.squareup.picasso.MemoryPolicy;
+import com.squareup.picasso.Picasso;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import timber.log.Timber;
+
+/**
+ * Downloads images for map symbols with a few requests in flight at a time, and hands them to the main
+ * thread as they arrive.
+ * <p>
+ * All pipelines share a small pool of download threads, so the number of concurrent requests is bounded
+ * no matter how many images are asked for. Images which finish close together are delivered in a
+ * single batch, so a source showing them only has to be updated a few times per second. The first
+ * image of a fetch is delivered straight away.
+ * </p>
+ * <p>
+ * A fetch can be cancelled at any time, for example when the selection it was made for changes. Images
+ * which haven't started downloading are dropped and nothing is delivered after the cancel. Images which were
+ * already downloaded are handed to {@link Processor#discard(Bitmap)}, or recycled if there's no processor.
+ * </p>
+ * <p>
+ * With a {@link DiskCache}, processed images are stored as PNG by URL. Images which are in the cache are
+ * decoded from it, without downloading or processing them again.
+ * </p>
+ */
+public final class ImageFetchPipeline {
+
+  private static final int THREAD_COUNT = 4;
+  private static final long KEEP_ALIVE_SECONDS = 30;
+  private static final long BATCH_INTERVAL_MS = 200;
+
+  private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+  private final Picasso picasso;
+  private final int imageSize;
+  private final DiskCache cache;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+  /**
+   * Changes a downloaded image before it's delivered, on the thread which downloaded it. Downloaded images
+   * bypass Picasso's memory cache, so they belong to the processor and may be recycled by it.
+   */
+  public interface Processor {
+    @NonNull
+    Bitmap process(@NonNull Bitmap bitmap);
+
+    /**
+     * Called on the main thread with a processed image which won't be delivered, because its fetch was
+     * cancelled, so it can be released.
+     */
+    void discard(@NonNull Bitmap processed);
+  }
+
+  /**
+   * Called on the main thread with the images of a fetch.
+   */
+  public interface Listener {
+
+    /**
+     * @param images the images which finished since the previous batch, by key in the order they finished
+     */
+    void onImagesFetched(@NonNull Map<String, Bitmap> images);
+
+    /**
+     * Called after each batch, and for images which failed, with how far the fetch has come.
+     *
+     * @param completedCount the number of images which were delivered or failed
+     * @param imageCount     the number of images in the fetch
+     */
+    void onFetchProgress(int completedCount, int imageCount);
+
+    /**
+     * Called once after the last batch, unless the fetch is cancelled.
+     *
+     * @param fetchedCount the number of images which were delivered
+     * @param failedCount  the number of images which couldn't be downloaded
+     */
+    void onFetchFinished(int fetchedCount, int failedCount);
+  }
+
+  /**
+   * @param picasso   the Picasso instance to download and decode images with
+   * @param imageSize the width and height images are resized to
+   */
+  public ImageFetchPipeline(@NonNull Picasso picasso, int imageSize) {
+    this(picasso, imageSize, null);
+  }
+
+  /**
+   * @param picasso   the Picasso instance to download and decode images with
+   * @param imageSize the width and height images are resized to
+   * @param cache     the cache for processed images, or null to always download them. Cached images are
+   *                  only looked up by URL, so a pipeline with a cache should always use the same processor.
+   */
+  public ImageFetchPipeline(@NonNull Picasso picasso, int imageSize, @Nullable DiskCache cache) {
+    this.picasso = picasso;
+    this.imageSize = imageSize;
+    this.cache = cache;
+  }
+
+  /**
+   * Download a set of images in the background.
+   *
+   * @param urls      the URL of each image, by the key it's delivered with
+   * @param processor run on each downloaded image, or null to deliver them as they are
+   * @param listener  called on the main thread with the images
+   * @return the fetch, to cancel it
+   */
+  @MainThread
+  @NonNull
+  public Fetch fetch(@NonNull Map<String, String> urls, @Nullable Processor processor,
+                     @NonNull Listener listener) {
+    Fetch fetch = new Fetch(urls.size(), processor, listener);
+    for (Map.Entry<String, String> url : urls.entrySet()) {
+      DownloadTask task = new DownloadTask(fetch, url.getKey(), url.getValue());
+      fetch.tasks.add(task);
+      EXECUTOR.execute(task);
+    }
+    if (urls.isEmpty()) {
+      final Fetch emptyFetch = fetch;
+      mainHandler.post(new Runnable() {
+        @Override
+        public void run() {
+          if (!emptyFetch.cancelled) {
+            emptyFetch.finish();
+          }
+        }
+      });
+    }
+    return fetch;
+  }
+
+  private static ThreadPoolExecutor createExecutor() {
+    ThreadFactory threadFactory = new ThreadFactory() {
+      private final AtomicInteger threadNumber = new AtomicInteger();
+
+      @Override
+      public Thread newThread(@NonNull final Runnable runnable) {
+        return new Thread(new Runnable() {
+          @Override
+          public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+          }
+        }, "ImageFetchPipeline-" + threadNumber.incrementAndGet());
+      }
+    };
+    // The queue is unbounded, so the pool never grows past its core size
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT,
+      KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * The images of one call to {@link #fetch(Map, Processor, Listener)}.
+   */
+  public final class Fetch {
+
+    private final int imageCount;
+    private final Processor processor;
+    private final Listener listener;
+    private final List<DownloadTask> tasks = new ArrayList<>();
+
+    // Only accessed on the main thread
+    private final Map<String, Bitmap> pendingImages = new LinkedHashMap<>();
+    private boolean flushScheduled;
+    private long lastFlushTime;
+    private int fetchedCount;
+    private int failedCount;
+    private int reportedCount;
+
+    private volatile boolean cancelled;
+
+    private final Runnable flushRunnable = new Runnable() {
+      @Override
+      public void run() {
+        flushScheduled = false;
+        flush();
+      }
+    };
+
+    Fetch(int imageCount, Processor processor, Listener listener) {
+      this.imageCount = imageCount;
+      this.processor = processor;
+      this.listener = listener;
+    }
+
+    /**
+     * Stop downloading and delivering images. Downloads which are already running finish in the
+     * background, but their images are discarded.
+     */
+    @MainThread
+    public void cancel() {
+      if (cancelled) {
+        return;
+      }
+      cancelled = true;
+      for (DownloadTask task : tasks) {
+        EXECUTOR.remove(task);
+      }
+      tasks.clear();
+      for (Bitmap image : pendingImages.values()) {
+        discard(image);
+      }
+      pendingImages.clear();
+      mainHandler.removeCallbacks(flushRunnable);
+    }
+
+    public boolean isCancelled() {
+      return cancelled;
+    }
+
+    @MainThread
+    private void onDownloaded(@NonNull DownloadTask task, @Nullable Bitmap bitmap) {
+      if (cancelled) {
+        if (bitmap != null) {
+          discard(bitmap);
+        }
+        return;
+      }
+      tasks.remove(task);
+      if (bitmap == null) {
+        failedCount++;
+      } else {
+        pendingImages.put(task.key, bitmap);
+      }
+
+      long sinceLastFlush = SystemClock.uptimeMillis() - lastFlushTime;
+      if (isComplete() || sinceLastFlush >= BATCH_INTERVAL_MS) {
+        mainHandler.removeCallbacks(flushRunnable);
+        flushScheduled = false;
+        flush();
+      } else if (!flushScheduled) {
+        flushScheduled = true;
+        mainHandler.postDelayed(flushRunnable, BATCH_INTERVAL_MS - sinceLastFlush);
+      }
+    }
+
+    private void flush() {
+      if (!pendingImages.isEmpty()) {
+        Map<String, Bitmap> images = new LinkedHashMap<>(pendingImages);
+        pendingImages.clear();
+        fetchedCount += images.size();
+        lastFlushTime = SystemClock.uptimeMillis();
+        listener.onImagesFetched(images);
+      }
+      int completedCount = fetchedCount + failedCount;
+      if (completedCount != reportedCount && !cancelled) {
+        reportedCount = completedCount;
+        listener.onFetchProgress(completedCount, imageCount);
+      }
+      if (isComplete() && !cancelled) {
+        finish();
+      }
+    }
+
+    private void discard(Bitmap image) {
+      if (processor != null) {
+        processor.discard(image);
+      } else {
+        image.recycle();
+      }
+    }
+
+    private boolean isComplete() {
+      return fetchedCount + pendingImages.size() + failedCount == imageCount;
+    }
+
+    private void finish() {
+      listener.onFetchFinished(fetchedCount, failedCount);
+    }
+  }
+
+  private final class DownloadTask implements Runnable {
+
+    private final Fetch fetch;
+    private final String key;
+    private final String url;
+
+    DownloadTask(Fetch fetch, String key, String url) {
+      this.fetch = fetch;
+      this.key = key;
+      this.url = url;
+    }
+
+    @Override
+    public void run() {
+      if (fetch.cancelled) {
+        return;
+      }
+      final Bitmap bitmap = download();
+      mainHandler.post(new Runnable() {
+        @Override
+        public void run() {
+          fetch.onDownloaded(DownloadTask.this, bitmap);
+        }
+      });
+    }
+
+    @WorkerThread
+    @Nullable
+    private Bitmap download() {
+      Bitmap cached = readCached();
+      if (cached != null) {
+        return cached;
+      }
+      try {
+        Bitmap bitmap = picasso.load(url)
+          .memoryPolicy(MemoryPolicy.NO_CACHE, MemoryPolicy.NO_STORE)
+          .resize(imageSize, imageSize)
+          .get();
+        if (bitmap == null) {
+          return null;
+        }
+        if (fetch.cancelled) {
+          // Not in Picasso's memory cache, nothing else holds it
+          bitmap.recycle();
+          return null;
+        }
+        Bitmap processed = fetch.processor != null ? fetch.processor.process(bitmap) : bitmap;
+        writeCached(processed);
+        return processed;
+      } catch (Exception exception) {
+        Timber.e(exception, "Unable to download %s", url);
+        return null;
+      }
+    }
+
+    @WorkerThread
+    @Nullable
+    private Bitmap readCached() {
+      if (cache == null) {
+        return null;
+      }
+      byte[] encoded = cache.get(getCacheKey());
+      if (encoded == null) {
+        return null;
+      }
+      BitmapFactory.Options options = new BitmapFactory.Options();
+      // Mutable like a processed image would be, so it can go back to a pool afterwards
+      options.inMutable = true;
+      return BitmapFactory.decodeByteArray(encoded, 0, encoded.length, options);
+    }
+
+    @WorkerThread
+    private void writeCached(Bitmap bitmap) {
+      if (cache == null) {
+        return;
+      }
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      // PNG keeps the transparency of processed images, the quality is ignored
+      if (bitmap.compress(Bitmap.CompressFormat.PNG, 100, output)) {
+        cache.put(getCacheKey(), output.toByteArray());
+      }
+    }
+
+    private String getCacheKey() {
+      return imageSize + ":" + url;
+    }
+  }
+}
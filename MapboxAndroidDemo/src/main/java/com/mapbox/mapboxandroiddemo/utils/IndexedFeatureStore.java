@@ -0,0 +1,120 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Features indexed by an id property, with mutable state which is shown through a separate small source.
+ * <p>
+ * A GeoJsonSource can only be replaced as a whole, so changing a property of one feature in a source of
+ * thousands means serializing all of them again. Instead, the features are added once to a source which
+ * never changes, and the features which currently have state, like a selected or loading feature, are
+ * marked active. Only the active features are put in the state source, and only when one of them changed
+ * since the previous {@link #commit()}. Layers showing state read the state source, so the cost of a
+ * change depends on the number of active features, not the total.
+ * </p>
+ */
+@MainThread
+public final class IndexedFeatureStore {
+
+  private final List<Feature> features;
+  private final Map<String, Integer> indices;
+  private final GeoJsonSource stateSource;
+  private final List<Integer> activeIndices = new ArrayList<>();
+  private boolean dirty;
+
+  /**
+   * @param featureCollection the features, which are changed in place
+   * @param idProperty        the property which identifies a feature, its values must be unique
+   * @param stateSource       the source to show the active features in
+   */
+  public IndexedFeatureStore(@NonNull FeatureCollection featureCollection, @NonNull String idProperty,
+                             @NonNull GeoJsonSource stateSource) {
+    this.features = featureCollection.features();
+    this.stateSource = stateSource;
+    indices = new HashMap<>(features.size() * 2);
+    for (int i = 0; i < features.size(); i++) {
+      indices.put(features.get(i).getStringProperty(idProperty), i);
+    }
+  }
+
+  public int size() {
+    return features.size();
+  }
+
+  @NonNull
+  public Feature get(int index) {
+    return features.get(index);
+  }
+
+  /**
+   * @param id the value of the id property
+   * @return the index of the feature, or -1 if there isn't a feature with the id
+   */
+  public int indexOf(@NonNull String id) {
+    Integer index = indices.get(id);
+    return index != null ? index : -1;
+  }
+
+  /**
+   * Add a feature to the state source, or remove it.
+   *
+   * @param index  the index of the feature
+   * @param active true to show the feature in the state source
+   */
+  public void setActive(int index, boolean active) {
+    int position = activeIndices.indexOf(index);
+    if (active && position < 0) {
+      activeIndices.add(index);
+      dirty = true;
+    } else if (!active && position >= 0) {
+      activeIndices.remove(position);
+      dirty = true;
+    }
+  }
+
+  public boolean isActive(int index) {
+    return activeIndices.contains(index);
+  }
+
+  public void setBooleanProperty(int index, @NonNull String key, boolean value) {
+    features.get(index).addBooleanProperty(key, value);
+    onPropertyChanged(index);
+  }
+
+  public void setNumberProperty(int index, @NonNull String key, @NonNull Number value) {
+    features.get(index).addNumberProperty(key, value);
+    onPropertyChanged(index);
+  }
+
+  private void onPropertyChanged(int index) {
+    // Inactive features aren't in any source which reads state, they're shown once they become active
+    if (!dirty && activeIndices.contains(index)) {
+      dirty = true;
+    }
+  }
+
+  /**
+   * Put the active features in the state source, if anything changed since the previous commit.
+   */
+  public void commit() {
+    if (!dirty) {
+      return;
+    }
+    dirty = false;
+    List<Feature> activeFeatures = new ArrayList<>(activeIndices.size());
+    for (Integer index : activeIndices) {
+      activeFeatures.add(features.get(index));
+    }
+    stateSource.setGeoJson(FeatureCollection.fromFeatures(activeFeatures));
+  }
+}
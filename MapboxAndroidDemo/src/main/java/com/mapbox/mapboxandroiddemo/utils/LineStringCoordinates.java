@@ -0,0 +1,253 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.mapbox.geojson.Point;
+import com.mapbox.mapboxsdk.geometry.LatLng;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import timber.log.Timber;
+
+/**
+ * Coordinates of a LineString stored in a single growable {@code double[]}, longitude and latitude
+ * interleaved.
+ * <p>
+ * Coordinates are streamed from the GeoJSON straight into the array, no JSON object tree or object per
+ * vertex is created while reading. Use {@link #toPoints()} or {@link #toLatLngs()} only where an API
+ * needs a list of objects.
+ * </p>
+ */
+public final class LineStringCoordinates {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final String TYPE_LINE_STRING = "LineString";
+  private static final int INITIAL_CAPACITY = 256;
+
+  private double[] coordinates;
+  private int size;
+
+  public LineStringCoordinates() {
+    this(INITIAL_CAPACITY / 2);
+  }
+
+  public LineStringCoordinates(int expectedSize) {
+    coordinates = new double[Math.max(2, expectedSize * 2)];
+  }
+
+  /**
+   * Read the first LineString from a GeoJSON file in the assets folder.
+   *
+   * @param context  the context used to access the assets
+   * @param filename the name of the GeoJSON file in the assets folder
+   * @return the coordinates of the first LineString, empty if the file can't be read or contains no LineString
+   */
+  @NonNull
+  public static LineStringCoordinates fromAsset(@NonNull Context context, @NonNull String filename) {
+    LineStringCoordinates lineStringCoordinates = new LineStringCoordinates();
+    InputStream inputStream = null;
+    try {
+      inputStream = context.getAssets().open(filename);
+      lineStringCoordinates.read(inputStream);
+    } catch (IOException | RuntimeException exception) {
+      Timber.e(exception, "Exception loading LineString from %s", filename);
+      lineStringCoordinates.clear();
+    } finally {
+      if (inputStream != null) {
+        try {
+          inputStream.close();
+        } catch (IOException ignored) {
+          // Nothing left to do with a stream that failed to close
+        }
+      }
+    }
+    return lineStringCoordinates;
+  }
+
+  /**
+   * Append the coordinates of the first LineString found in a GeoJSON stream, which can hold a
+   * FeatureCollection, a Feature or a bare geometry. The stream is not closed.
+   *
+   * @param inputStream UTF-8 encoded GeoJSON
+   * @return true if a LineString was found
+   * @throws IOException if the stream can't be read or isn't valid JSON
+   */
+  public boolean read(@NonNull InputStream inputStream) throws IOException {
+    JsonReader reader = new JsonReader(new InputStreamReader(inputStream, UTF_8));
+    return readObject(reader);
+  }
+
+  /**
+   * Scans a GeoJSON object for the first LineString, descending into features and geometries.
+   */
+  private boolean readObject(JsonReader reader) throws IOException {
+    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+      reader.skipValue();
+      return false;
+    }
+
+    String type = null;
+    int start = size;
+    boolean readCoordinates = false;
+    boolean found = false;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (found) {
+        reader.skipValue();
+      } else if ("type".equals(name)) {
+        type = reader.nextString();
+        if (readCoordinates && !TYPE_LINE_STRING.equals(type)) {
+          // coordinates came before the type and belong to some other geometry
+          size = start;
+          readCoordinates = false;
+        }
+      } else if ("coordinates".equals(name) && (type == null || TYPE_LINE_STRING.equals(type))) {
+        readCoordinates = readPositions(reader);
+        found = readCoordinates && type != null;
+      } else if ("features".equals(name) || "geometries".equals(name)) {
+        found = readArray(reader);
+      } else if ("geometry".equals(name)) {
+        found = readObject(reader);
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return found || (readCoordinates && TYPE_LINE_STRING.equals(type));
+  }
+
+  private boolean readArray(JsonReader reader) throws IOException {
+    boolean found = false;
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (found) {
+        reader.skipValue();
+      } else {
+        found = readObject(reader);
+      }
+    }
+    reader.endArray();
+    return found;
+  }
+
+  /**
+   * Reads an array of positions. Returns false, leaving no coordinates behind, if the array turns out to be
+   * nested deeper or shallower than a LineString.
+   */
+  private boolean readPositions(JsonReader reader) throws IOException {
+    int start = size;
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+        size = start;
+        skipRemaining(reader);
+        return false;
+      }
+      reader.beginArray();
+      if (reader.peek() != JsonToken.NUMBER) {
+        size = start;
+        skipRemaining(reader);
+        skipRemaining(reader);
+        return false;
+      }
+      double longitude = reader.nextDouble();
+      double latitude = reader.nextDouble();
+      add(longitude, latitude);
+      skipRemaining(reader);
+    }
+    reader.endArray();
+    return true;
+  }
+
+  private static void skipRemaining(JsonReader reader) throws IOException {
+    while (reader.hasNext()) {
+      reader.skipValue();
+    }
+    reader.endArray();
+  }
+
+  /**
+   * Append a coordinate.
+   *
+   * @param longitude the longitude of the coordinate
+   * @param latitude  the latitude of the coordinate
+   */
+  public void add(double longitude, double latitude) {
+    if (size * 2 + 2 > coordinates.length) {
+      coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+    }
+    coordinates[size * 2] = longitude;
+    coordinates[size * 2 + 1] = latitude;
+    size++;
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * @return the number of coordinates
+   */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public double longitude(int index) {
+    return coordinates[checkIndex(index) * 2];
+  }
+
+  public double latitude(int index) {
+    return coordinates[checkIndex(index) * 2 + 1];
+  }
+
+  /**
+   * Returns the backing array, longitude and latitude interleaved. Only the first {@code size() * 2}
+   * values are in use.
+   *
+   * @return the backing array
+   */
+  @NonNull
+  public double[] rawCoordinates() {
+    return coordinates;
+  }
+
+  @NonNull
+  public List<Point> toPoints() {
+    List<Point> points = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      points.add(Point.fromLngLat(coordinates[i * 2], coordinates[i * 2 + 1]));
+    }
+    return points;
+  }
+
+  @NonNull
+  public List<LatLng> toLatLngs() {
+    List<LatLng> latLngs = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      latLngs.add(new LatLng(coordinates[i * 2 + 1], coordinates[i * 2]));
+    }
+    return latLngs;
+  }
+
+  private int checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+    }
+    return index;
+  }
+}
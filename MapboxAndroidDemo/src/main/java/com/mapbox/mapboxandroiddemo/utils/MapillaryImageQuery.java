@@ -0,0 +1,103 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import com.mapbox.geojson.FeatureCollection;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Looks up the Mapillary pictures around a location, with the responses kept in a {@link DiskCache}.
+ * <p>
+ * Locations are rounded to a grid of about ten meters before they're queried, so taps on the same point
+ * of interest ask for exactly the same thing. The rounded location and radius are the cache key: a
+ * location which was queried before the cached response expired doesn't go to the network at all.
+ * </p>
+ * <p>
+ * The base URL is a parameter, so the client can be pointed at a local server which stands in for the API.
+ * </p>
+ */
+public final class MapillaryImageQuery {
+
+  public static final String DEFAULT_BASE_URL = "https://a.mapillary.com/v3/images/";
+
+  private static final String QUERY = "?lookat=%s,%s&closeto=%s,%s&radius=%d"
+    + "&client_id=bjgtc1FDTnFPaXpxeTZuUDNabmJ5dzozOGE1ODhkMmEyYTkyZTI4";
+  // About 11 meters of latitude
+  private static final double COORDINATE_STEPS_PER_DEGREE = 10000;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final OkHttpClient client;
+  private final String baseUrl;
+  private final DiskCache cache;
+
+  /**
+   * @param client  the client to send requests with
+   * @param baseUrl the URL of the images endpoint, usually {@link #DEFAULT_BASE_URL}
+   * @param cache   the cache for responses, or null to always query the API
+   */
+  public MapillaryImageQuery(@NonNull OkHttpClient client, @NonNull String baseUrl, @Nullable DiskCache cache) {
+    this.client = client;
+    this.baseUrl = baseUrl;
+    this.cache = cache;
+  }
+
+  /**
+   * Find the pictures taken near a location.
+   *
+   * @param longitude the longitude of the location
+   * @param latitude  the latitude of the location
+   * @param radius    the maximum distance of a picture from the location, in meters
+   * @return the pictures, as point features
+   * @throws IOException if the API can't be reached or responds with an error
+   */
+  @WorkerThread
+  @NonNull
+  public FeatureCollection query(double longitude, double latitude, int radius) throws IOException {
+    String query = String.format(Locale.US, QUERY, quantize(longitude), quantize(latitude),
+      quantize(longitude), quantize(latitude), radius);
+    if (cache != null) {
+      byte[] cached = cache.get(query);
+      if (cached != null) {
+        return FeatureCollection.fromJson(new String(cached, UTF_8));
+      }
+    }
+
+    Request request = new Request.Builder()
+      .url(baseUrl + query)
+      .build();
+    Response response = client.newCall(request).execute();
+    ResponseBody body = response.body();
+    try {
+      if (!response.isSuccessful() || body == null) {
+        throw new IOException("Unexpected response " + response.code() + " for " + request.url());
+      }
+      String json = body.string();
+      // Parsed before it's cached, so a response which can't be read isn't kept
+      FeatureCollection featureCollection = FeatureCollection.fromJson(json);
+      if (cache != null) {
+        cache.put(query, json.getBytes(UTF_8));
+      }
+      return featureCollection;
+    } finally {
+      response.close();
+    }
+  }
+
+  /**
+   * Round a coordinate to the grid, as a string so the key and URL don't depend on float formatting.
+   */
+  private static String quantize(double coordinate) {
+    long steps = Math.round(coordinate * COORDINATE_STEPS_PER_DEGREE);
+    return String.format(Locale.US, "%.4f", steps / COORDINATE_STEPS_PER_DEGREE);
+  }
+}
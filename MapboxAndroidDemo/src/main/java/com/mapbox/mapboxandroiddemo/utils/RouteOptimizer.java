@@ -0,0 +1,261 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Orders stops into a short route on the device, as a quick answer while the Optimization API works on the
+ * real one.
+ * <p>
+ * The route starts at the first stop. It's seeded by visiting the nearest unvisited stop each time, or by
+ * an earlier order the stops which are new are inserted into where they add the least. The seed is then
+ * improved until no move helps anymore: 2-opt reverses a stretch of the route where that removes a
+ * crossing, Or-opt moves a run of up to three stops to another place, in either direction. The result is
+ * a local optimum, usually within a few percent of the best route for the dozen stops the API accepts.
+ * </p>
+ * <p>
+ * Distances are read from a single row-major array and the route is a plain index array, so improving it
+ * doesn't allocate. The distances have to be symmetric, like the ones {@link DistanceMatrix} computes.
+ * </p>
+ */
+public final class RouteOptimizer {
+
+  // Improvements smaller than this are rounding noise, taking them could keep the search going in circles
+  private static final double EPSILON = 1e-9;
+  private static final int MAX_MOVED_STOPS = 3;
+
+  private RouteOptimizer() {
+    // No instances
+  }
+
+  /**
+   * Order the stops, starting from a nearest neighbour route.
+   *
+   * @param distances the distance from each stop to each stop, row by row
+   * @param size      the number of stops
+   * @param roundTrip true if the route returns to the first stop, false if it ends at any stop
+   * @return the order to visit the stops in, starting with stop 0
+   */
+  @NonNull
+  public static int[] solve(@NonNull double[] distances, int size, boolean roundTrip) {
+    return solve(distances, size, roundTrip, null);
+  }
+
+  /**
+   * Order the stops, starting from an earlier order. When stops are added one at a time, the order of the
+   * previous stops is a good start and the search has little left to do.
+   *
+   * @param distances    the distance from each stop to each stop, row by row
+   * @param size         the number of stops
+   * @param roundTrip    true if the route returns to the first stop, false if it ends at any stop
+   * @param initialOrder the order to start from, beginning with stop 0. Stops it doesn't contain are
+   *                     inserted where they add the least. Null to start from a nearest neighbour route.
+   * @return the order to visit the stops in, starting with stop 0
+   */
+  @NonNull
+  public static int[] solve(@NonNull double[] distances, int size, boolean roundTrip,
+                            @Nullable int[] initialOrder) {
+    if (size <= 0) {
+      return new int[0];
+    }
+    double[] costs = getCosts(distances, size, roundTrip);
+    int[] order = initialOrder != null
+      ? insertMissingStops(costs, size, initialOrder) : nearestNeighbour(costs, size);
+    boolean improved = true;
+    while (improved) {
+      improved = improveWithTwoOpt(costs, size, order);
+      improved |= improveWithOrOpt(costs, size, order);
+    }
+    return order;
+  }
+
+  /**
+   * @return the length of the route through the stops in the given order
+   */
+  public static double getLength(@NonNull double[] distances, int size, @NonNull int[] order,
+                                 boolean roundTrip) {
+    double length = 0;
+    for (int i = 1; i < order.length; i++) {
+      length += distances[order[i - 1] * size + order[i]];
+    }
+    if (roundTrip && order.length > 1) {
+      length += distances[order[order.length - 1] * size + order[0]];
+    }
+    return length;
+  }
+
+  /**
+   * Every route is searched as a round trip. A route which ends anywhere is a round trip whose way back to
+   * the first stop is free, so the column of stop 0 is zeroed in a copy of the distances.
+   */
+  private static double[] getCosts(double[] distances, int size, boolean roundTrip) {
+    if (roundTrip) {
+      return distances;
+    }
+    double[] costs = new double[size * size];
+    System.arraycopy(distances, 0, costs, 0, size * size);
+    for (int from = 0; from < size; from++) {
+      costs[from * size] = 0;
+    }
+    return costs;
+  }
+
+  private static int[] nearestNeighbour(double[] costs, int size) {
+    int[] order = new int[size];
+    boolean[] visited = new boolean[size];
+    visited[0] = true;
+    for (int i = 1; i < size; i++) {
+      int from = order[i - 1];
+      int nearest = -1;
+      for (int to = 1; to < size; to++) {
+        if (!visited[to] && (nearest == -1 || costs[from * size + to] < costs[from * size + nearest])) {
+          nearest = to;
+        }
+      }
+      order[i] = nearest;
+      visited[nearest] = true;
+    }
+    return order;
+  }
+
+  private static int[] insertMissingStops(double[] costs, int size, int[] initialOrder) {
+    int[] order = new int[size];
+    boolean[] visited = new boolean[size];
+    int length = 0;
+    order[length++] = 0;
+    visited[0] = true;
+    for (int stop : initialOrder) {
+      if (stop > 0 && stop < size && !visited[stop]) {
+        order[length++] = stop;
+        visited[stop] = true;
+      }
+    }
+    for (int stop = 1; stop < size; stop++) {
+      if (visited[stop]) {
+        continue;
+      }
+      // Find the edge the stop adds the least to, the edge back to the first stop included
+      int bestPosition = length;
+      double bestIncrease = Double.MAX_VALUE;
+      for (int position = 1; position <= length; position++) {
+        int previous = order[position - 1];
+        int next = order[position % length];
+        double increase = costs[previous * size + stop] + costs[stop * size + next]
+          - costs[previous * size + next];
+        if (increase < bestIncrease) {
+          bestIncrease = increase;
+          bestPosition = position;
+        }
+      }
+      System.arraycopy(order, bestPosition, order, bestPosition + 1, length - bestPosition);
+      order[bestPosition] = stop;
+      length++;
+    }
+    return order;
+  }
+
+  /**
+   * Reverse stretches of the route while that makes it shorter. Stop 0 stays first, so only the edges at
+   * the ends of a stretch change direction relative to the stop 0 column of the costs.
+   *
+   * @return true if the route changed
+   */
+  private static boolean improveWithTwoOpt(double[] costs, int size, int[] order) {
+    boolean changed = false;
+    boolean improved = true;
+    while (improved) {
+      improved = false;
+      for (int first = 1; first < size - 1; first++) {
+        int before = order[first - 1];
+        int firstStop = order[first];
+        for (int last = first + 1; last < size; last++) {
+          int lastStop = order[last];
+          int after = order[(last + 1) % size];
+          double delta = costs[before * size + lastStop] + costs[firstStop * size + after]
+            - costs[before * size + firstStop] - costs[lastStop * size + after];
+          if (delta < -EPSILON) {
+            reverse(order, first, last);
+            firstStop = order[first];
+            improved = true;
+            changed = true;
+          }
+        }
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Move runs of up to three stops to a better place in the route, forwards or reversed, while that makes
+   * it shorter.
+   *
+   * @return true if the route changed
+   */
+  private static boolean improveWithOrOpt(double[] costs, int size, int[] order) {
+    boolean changed = false;
+    boolean improved = true;
+    while (improved) {
+      improved = false;
+      for (int runLength = 1; runLength <= MAX_MOVED_STOPS; runLength++) {
+        for (int first = 1; first + runLength <= size; first++) {
+          int last = first + runLength - 1;
+          int firstStop = order[first];
+          int lastStop = order[last];
+          int before = order[first - 1];
+          int after = order[(last + 1) % size];
+          double removed = costs[before * size + firstStop] + costs[lastStop * size + after]
+            - costs[before * size + after];
+
+          // Insert between order[position] and the stop after it, outside of the run and its edges. After a
+          // move the pass goes on with the run which took its place.
+          for (int position = 0; position < size; position++) {
+            if (position >= first - 1 && position <= last) {
+              continue;
+            }
+            int from = order[position];
+            int to = order[(position + 1) % size];
+            double forward = costs[from * size + firstStop] + costs[lastStop * size + to];
+            double reversed = costs[from * size + lastStop] + costs[firstStop * size + to];
+            double added = Math.min(forward, reversed) - costs[from * size + to];
+            if (added < removed - EPSILON) {
+              moveRun(order, first, last, position, reversed < forward);
+              improved = true;
+              changed = true;
+              break;
+            }
+          }
+        }
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Move order[first..last] behind order[position]. The run and the stops it passes swap places by
+   * reversing each of them and then both together, leaving the run reversed if it isn't reversed on its own
+   * first.
+   */
+  private static void moveRun(int[] order, int first, int last, int position, boolean reversed) {
+    if (position > last) {
+      if (!reversed) {
+        reverse(order, first, last);
+      }
+      reverse(order, last + 1, position);
+      reverse(order, first, position);
+    } else {
+      reverse(order, position + 1, first - 1);
+      if (!reversed) {
+        reverse(order, first, last);
+      }
+      reverse(order, position + 1, last);
+    }
+  }
+
+  private static void reverse(int[] order, int from, int to) {
+    while (from < to) {
+      int swap = order[from];
+      order[from++] = order[to];
+      order[to--] = swap;
+    }
+  }
+}
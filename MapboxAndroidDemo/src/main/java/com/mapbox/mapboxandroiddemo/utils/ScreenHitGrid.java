@@ -0,0 +1,123 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.MainThread;
+
+import java.util.Arrays;
+
+/**
+ * Finds the rectangle under a point on screen, for hit testing symbols without querying the map.
+ * <p>
+ * The screen is divided into square cells, and every rectangle is listed in each cell it overlaps. A
+ * lookup only tests the rectangles of the cell under the point, so it takes about the same time no matter
+ * how many rectangles there are. Rectangles are kept in primitive arrays which are reused when the grid
+ * is filled again, typically whenever the camera comes to rest.
+ * </p>
+ * <p>
+ * Rectangles added later are on top: when rectangles overlap, the last one added is found.
+ * </p>
+ */
+@MainThread
+public final class ScreenHitGrid {
+
+  private final int cellSize;
+  private int columns;
+  private int rows;
+
+  // Per rectangle: left, top, right and bottom
+  private float[] rects = new float[4 * 32];
+  private int[] ids = new int[32];
+  private int rectCount;
+
+  // Per cell the most recent entry, entries link to the previous entry in the same cell
+  private int[] cellHeads = new int[0];
+  private int[] entryRects = new int[64];
+  private int[] entryNext = new int[64];
+  private int entryCount;
+
+  /**
+   * @param cellSize the width and height of a cell in pixels, about the size of the rectangles works well
+   */
+  public ScreenHitGrid(int cellSize) {
+    this.cellSize = cellSize;
+  }
+
+  /**
+   * Remove all rectangles and cover a screen of a new size.
+   *
+   * @param width  the width of the screen, in pixels
+   * @param height the height of the screen, in pixels
+   */
+  public void reset(int width, int height) {
+    columns = Math.max(1, (width + cellSize - 1) / cellSize);
+    rows = Math.max(1, (height + cellSize - 1) / cellSize);
+    if (cellHeads.length < columns * rows) {
+      cellHeads = new int[columns * rows];
+    }
+    Arrays.fill(cellHeads, 0, columns * rows, -1);
+    rectCount = 0;
+    entryCount = 0;
+  }
+
+  /**
+   * Add a rectangle, on top of the ones added before. Rectangles outside the screen are ignored.
+   *
+   * @param id     returned by {@link #find(float, float)} when the point is in this rectangle
+   * @param left   the left edge, in pixels
+   * @param top    the top edge, in pixels
+   * @param right  the right edge, in pixels
+   * @param bottom the bottom edge, in pixels
+   */
+  public void add(int id, float left, float top, float right, float bottom) {
+    int firstColumn = Math.max(0, (int) Math.floor(left / cellSize));
+    int lastColumn = Math.min(columns - 1, (int) Math.floor(right / cellSize));
+    int firstRow = Math.max(0, (int) Math.floor(top / cellSize));
+    int lastRow = Math.min(rows - 1, (int) Math.floor(bottom / cellSize));
+    if (firstColumn > lastColumn || firstRow > lastRow) {
+      return;
+    }
+
+    if (rectCount == ids.length) {
+      ids = Arrays.copyOf(ids, rectCount * 2);
+      rects = Arrays.copyOf(rects, rectCount * 8);
+    }
+    int rect = rectCount++;
+    ids[rect] = id;
+    rects[rect * 4] = left;
+    rects[rect * 4 + 1] = top;
+    rects[rect * 4 + 2] = right;
+    rects[rect * 4 + 3] = bottom;
+
+    for (int row = firstRow; row <= lastRow; row++) {
+      for (int column = firstColumn; column <= lastColumn; column++) {
+        if (entryCount == entryRects.length) {
+          entryRects = Arrays.copyOf(entryRects, entryCount * 2);
+          entryNext = Arrays.copyOf(entryNext, entryCount * 2);
+        }
+        int cell = row * columns + column;
+        entryRects[entryCount] = rect;
+        entryNext[entryCount] = cellHeads[cell];
+        cellHeads[cell] = entryCount++;
+      }
+    }
+  }
+
+  /**
+   * @param x the horizontal position of the point, in pixels
+   * @param y the vertical position of the point, in pixels
+   * @return the id of the topmost rectangle containing the point, or -1 if there isn't one
+   */
+  public int find(float x, float y) {
+    int column = (int) Math.floor(x / cellSize);
+    int row = (int) Math.floor(y / cellSize);
+    if (column < 0 || column >= columns || row < 0 || row >= rows) {
+      return -1;
+    }
+    for (int entry = cellHeads[row * columns + column]; entry >= 0; entry = entryNext[entry]) {
+      int offset = entryRects[entry] * 4;
+      if (x >= rects[offset] && y >= rects[offset + 1] && x < rects[offset + 2] && y < rects[offset + 3]) {
+        return ids[entryRects[entry]];
+      }
+    }
+    return -1;
+  }
+}
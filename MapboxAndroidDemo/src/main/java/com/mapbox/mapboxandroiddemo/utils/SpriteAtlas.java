@@ -0,0 +1,258 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.os.Build;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.view.View;
+
+import com.mapbox.mapboxsdk.maps.MapboxMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Draws Android views into a few large shared bitmaps, for use as icons of a SymbolLayer.
+ * <p>
+ * Views are packed row by row into pages of a fixed size, and the region of every sprite is kept in a
+ * rect index. Drawing a view again under the same name only redraws its region. The map still needs an
+ * image per icon: {@link #addToMap(MapboxMap, String)} copies the region into a single reused bitmap,
+ * which is uploaded by {@link MapboxMap#addImage(String, Bitmap)} before it returns.
+ * </p>
+ * <p>
+ * An atlas isn't thread safe. It can be filled on a background thread and then handed to the main thread,
+ * but must only be used by one thread at a time.
+ * </p>
+ */
+public final class SpriteAtlas {
+
+  // Per sprite: page, left, top, width and height
+  private static final int SPRITE_FIELDS = 5;
+
+  private final int pageWidth;
+  private final int pageHeight;
+  private final List<Bitmap> pages = new ArrayList<>();
+  private final Map<String, Integer> spriteIndices = new HashMap<>();
+  private int[] sprites = new int[SPRITE_FIELDS * 16];
+  private int spriteCount;
+
+  // The row of the last page new sprites are added to
+  private int shelfPage = -1;
+  private int shelfTop;
+  private int shelfLeft;
+  private int shelfHeight;
+  private int shelfPageWidth;
+
+  private final Canvas canvas = new Canvas();
+  private final Rect sourceRect = new Rect();
+  private final Rect destinationRect = new Rect();
+  private Bitmap uploadBitmap;
+
+  /**
+   * @param pageWidth  the width of the shared bitmaps, in pixels
+   * @param pageHeight the height of the shared bitmaps, in pixels
+   */
+  public SpriteAtlas(int pageWidth, int pageHeight) {
+    this.pageWidth = pageWidth;
+    this.pageHeight = pageHeight;
+  }
+
+  /**
+   * Draw a view into the atlas. If a sprite with the name exists and the view still has the same size,
+   * only its region is redrawn, otherwise the sprite moves to a new region.
+   *
+   * @param name the name of the sprite, which is also the name of its image on the map
+   * @param view the view, which doesn't need to be attached to a window
+   * @return the index of the sprite
+   */
+  public int put(@NonNull String name, @NonNull View view) {
+    int measureSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+    view.measure(measureSpec, measureSpec);
+    int width = view.getMeasuredWidth();
+    int height = view.getMeasuredHeight();
+    view.layout(0, 0, width, height);
+
+    Integer existing = spriteIndices.get(name);
+    int sprite = existing != null ? existing : spriteCount++;
+    if (existing == null || getWidth(sprite) != width || getHeight(sprite) != height) {
+      allocate(sprite, width, height);
+      spriteIndices.put(name, sprite);
+    }
+
+    int offset = sprite * SPRITE_FIELDS;
+    canvas.setBitmap(pages.get(sprites[offset]));
+    canvas.save();
+    canvas.clipRect(sprites[offset + 1], sprites[offset + 2],
+      sprites[offset + 1] + width, sprites[offset + 2] + height);
+    canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+    canvas.translate(sprites[offset + 1], sprites[offset + 2]);
+    view.draw(canvas);
+    canvas.restore();
+    return sprite;
+  }
+
+  /**
+   * @param name the name of a sprite
+   * @return the index of the sprite, or -1 if there isn't a sprite with the name
+   */
+  public int indexOf(@NonNull String name) {
+    Integer sprite = spriteIndices.get(name);
+    return sprite != null ? sprite : -1;
+  }
+
+  public int getWidth(int sprite) {
+    return sprites[sprite * SPRITE_FIELDS + 3];
+  }
+
+  public int getHeight(int sprite) {
+    return sprites[sprite * SPRITE_FIELDS + 4];
+  }
+
+  /**
+   * @return the number of shared bitmaps the sprites are drawn in
+   */
+  public int getPageCount() {
+    return pages.size();
+  }
+
+  /**
+   * Add the image of a sprite to the map, or replace it.
+   *
+   * @param mapboxMap the map to add the image to
+   * @param name      the name of the sprite
+   */
+  @MainThread
+  public void addToMap(@NonNull MapboxMap mapboxMap, @NonNull String name) {
+    int sprite = indexOf(name);
+    if (sprite < 0) {
+      throw new IllegalArgumentException("No sprite named " + name);
+    }
+    int offset = sprite * SPRITE_FIELDS;
+    int left = sprites[offset + 1];
+    int top = sprites[offset + 2];
+    int width = sprites[offset + 3];
+    int height = sprites[offset + 4];
+
+    Bitmap bitmap = getUploadBitmap(width, height);
+    bitmap.eraseColor(Color.TRANSPARENT);
+    canvas.setBitmap(bitmap);
+    sourceRect.set(left, top, left + width, top + height);
+    destinationRect.set(0, 0, width, height);
+    canvas.drawBitmap(pages.get(sprites[offset]), sourceRect, destinationRect, null);
+    mapboxMap.addImage(name, bitmap);
+  }
+
+  /**
+   * Add the images of all sprites to the map.
+   *
+   * @param mapboxMap the map to add the images to
+   */
+  @MainThread
+  public void addAllToMap(@NonNull MapboxMap mapboxMap) {
+    for (String name : spriteIndices.keySet()) {
+      addToMap(mapboxMap, name);
+    }
+  }
+
+  /**
+   * Shrink the page sprites were last added to down to the part in use, so a set of sprites which doesn't
+   * fill a page doesn't keep a full page in memory. Sprites added afterwards start on a new page.
+   */
+  public void trimToSize() {
+    if (shelfPage < 0) {
+      return;
+    }
+    int usedHeight = shelfTop + shelfHeight;
+    if (usedHeight < pageHeight || shelfPageWidth < pageWidth) {
+      Bitmap page = pages.get(shelfPage);
+      Bitmap trimmed = Bitmap.createBitmap(shelfPageWidth, usedHeight, Bitmap.Config.ARGB_8888);
+      canvas.setBitmap(trimmed);
+      canvas.drawBitmap(page, 0, 0, null);
+      pages.set(shelfPage, trimmed);
+      page.recycle();
+    }
+    shelfPage = -1;
+  }
+
+  /**
+   * Release the bitmaps of the atlas, it can't be used afterwards. Images already added to the map stay.
+   */
+  public void recycle() {
+    for (Bitmap page : pages) {
+      page.recycle();
+    }
+    pages.clear();
+    spriteIndices.clear();
+    spriteCount = 0;
+    if (uploadBitmap != null) {
+      uploadBitmap.recycle();
+      uploadBitmap = null;
+    }
+  }
+
+  private void allocate(int sprite, int width, int height) {
+    if (sprites.length < (sprite + 1) * SPRITE_FIELDS) {
+      sprites = Arrays.copyOf(sprites, sprites.length * 2);
+    }
+    int page;
+    int left = 0;
+    int top = 0;
+    if (width > pageWidth || height > pageHeight) {
+      // Too large to share a page, the sprite gets a bitmap of its own
+      pages.add(Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888));
+      page = pages.size() - 1;
+    } else {
+      if (shelfPage >= 0 && shelfLeft + width > pageWidth) {
+        // Start a new row below the current one
+        shelfTop += shelfHeight;
+        shelfLeft = 0;
+        shelfHeight = 0;
+      }
+      if (shelfPage < 0 || shelfTop + height > pageHeight) {
+        pages.add(Bitmap.createBitmap(pageWidth, pageHeight, Bitmap.Config.ARGB_8888));
+        shelfPage = pages.size() - 1;
+        shelfTop = 0;
+        shelfLeft = 0;
+        shelfHeight = 0;
+        shelfPageWidth = 0;
+      }
+      page = shelfPage;
+      left = shelfLeft;
+      top = shelfTop;
+      shelfLeft += width;
+      shelfHeight = Math.max(shelfHeight, height);
+      shelfPageWidth = Math.max(shelfPageWidth, shelfLeft);
+    }
+
+    int offset = sprite * SPRITE_FIELDS;
+    sprites[offset] = page;
+    sprites[offset + 1] = left;
+    sprites[offset + 2] = top;
+    sprites[offset + 3] = width;
+    sprites[offset + 4] = height;
+  }
+
+  /**
+   * Returns a bitmap of exactly the size of a sprite. Since KitKat the same bitmap is reconfigured for
+   * every sprite which fits in its memory.
+   */
+  private Bitmap getUploadBitmap(int width, int height) {
+    if (uploadBitmap != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+      && uploadBitmap.getAllocationByteCount() >= width * height * 4) {
+      uploadBitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+      return uploadBitmap;
+    }
+    if (uploadBitmap != null) {
+      uploadBitmap.recycle();
+    }
+    uploadBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    return uploadBitmap;
+  }
+}
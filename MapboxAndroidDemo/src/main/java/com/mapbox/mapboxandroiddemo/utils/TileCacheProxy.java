@@ -0,0 +1,302 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import timber.log.Timber;
+
+/**
+ * Serves the tiles of a remote tile set from a {@link DiskCache}, through a small HTTP server on the loopback
+ * interface which a map source can point at.
+ * <p>
+ * The map requests {@code /{z}/{x}/{y}.mvt} from the proxy. Tiles in the cache are answered straight from
+ * disk, others are fetched from the upstream URL, stored and then answered. Tiles around a position can be
+ * prefetched, so panning to a neighbouring area finds them on disk already. Browsing an area again within
+ * the lifetime of the cache doesn't go to the network at all.
+ * </p>
+ * <p>
+ * Tiles are stored as the upstream decoded them, without any content encoding. Only successful responses
+ * are cached, other status codes are passed on to the map.
+ * </p>
+ */
+public final class TileCacheProxy {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final Pattern TILE_PATH = Pattern.compile("^GET /(\\d+)/(\\d+)/(\\d+)\\.mvt\\S* HTTP/1\\.[01]$");
+  private static final int SERVE_THREAD_COUNT = 4;
+
+  private final OkHttpClient client;
+  private final String upstreamUrl;
+  private final DiskCache cache;
+  private final int maxZoom;
+  // Prefetching has a thread of its own, so it never holds up tiles the map is waiting for
+  private final ExecutorService serveExecutor = Executors.newFixedThreadPool(SERVE_THREAD_COUNT,
+    createThreadFactory("TileCacheProxy-serve"));
+  private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(
+    createThreadFactory("TileCacheProxy-prefetch"));
+  // Tiles which are being prefetched, so moving the camera a little doesn't fetch them twice
+  private final Set<String> prefetching = new HashSet<>();
+  private ServerSocket serverSocket;
+
+  /**
+   * @param client      the client to fetch tiles from upstream with
+   * @param upstreamUrl the URL of the tiles, with {z}, {x} and {y} placeholders
+   * @param cache       the cache for the tiles
+   * @param maxZoom     the highest zoom level which has tiles, higher levels are prefetched at this one
+   */
+  public TileCacheProxy(@NonNull OkHttpClient client, @NonNull String upstreamUrl, @NonNull DiskCache cache,
+                        int maxZoom) {
+    this.client = client;
+    this.upstreamUrl = upstreamUrl;
+    this.cache = cache;
+    this.maxZoom = maxZoom;
+  }
+
+  /**
+   * Start listening on a free port of the loopback interface.
+   *
+   * @return the URL of the tiles on the proxy, with {z}, {x} and {y} placeholders
+   * @throws IOException if the server can't be started
+   */
+  @NonNull
+  public synchronized String start() throws IOException {
+    if (serverSocket == null) {
+      serverSocket = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1"));
+      final ServerSocket acceptSocket = serverSocket;
+      Thread acceptThread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          accept(acceptSocket);
+        }
+      }, "TileCacheProxy-accept");
+      acceptThread.setDaemon(true);
+      acceptThread.start();
+    }
+    return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/{z}/{x}/{y}.mvt";
+  }
+
+  /**
+   * Stop listening and drop pending prefetches. The proxy can't be started again.
+   */
+  public synchronized void stop() {
+    if (serverSocket != null) {
+      try {
+        serverSocket.close();
+      } catch (IOException exception) {
+        Timber.w(exception, "Unable to close tile proxy");
+      }
+      serverSocket = null;
+    }
+    serveExecutor.shutdownNow();
+    prefetchExecutor.shutdownNow();
+  }
+
+  /**
+   * Fetch the tiles around a position into the cache, in the background. Tiles which are cached already
+   * aren't fetched again.
+   *
+   * @param latitude  the latitude of the position
+   * @param longitude the longitude of the position
+   * @param zoom      the zoom of the map
+   * @param radius    the number of tiles to fetch in each direction around the tile of the position
+   */
+  public void prefetch(double latitude, double longitude, double zoom, int radius) {
+    int z = Math.max(0, Math.min(maxZoom, (int) Math.floor(zoom)));
+    int tileCount = 1 << z;
+    int centerX = (int) Math.floor((longitude + 180) / 360 * tileCount);
+    double latitudeRadians = Math.toRadians(latitude);
+    int centerY = (int) Math.floor(
+      (1 - Math.log(Math.tan(latitudeRadians) + 1 / Math.cos(latitudeRadians)) / Math.PI) / 2 * tileCount);
+
+    for (int y = Math.max(0, centerY - radius); y <= Math.min(tileCount - 1, centerY + radius); y++) {
+      for (int dx = -radius; dx <= radius; dx++) {
+        // Columns wrap around the antimeridian
+        int x = ((centerX + dx) % tileCount + tileCount) % tileCount;
+        final String tileKey = getTileKey(z, x, y);
+        synchronized (prefetching) {
+          if (prefetchExecutor.isShutdown() || !prefetching.add(tileKey)) {
+            continue;
+          }
+        }
+        final int tileZ = z;
+        final int tileX = x;
+        final int tileY = y;
+        prefetchExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              if (!cache.contains(tileKey)) {
+                fetch(tileZ, tileX, tileY, new int[1]);
+              }
+            } catch (IOException exception) {
+              Timber.w(exception, "Unable to prefetch tile %s", tileKey);
+            } finally {
+              synchronized (prefetching) {
+                prefetching.remove(tileKey);
+              }
+            }
+          }
+        });
+      }
+    }
+  }
+
+  private void accept(ServerSocket acceptSocket) {
+    while (!acceptSocket.isClosed()) {
+      final Socket socket;
+      try {
+        socket = acceptSocket.accept();
+      } catch (SocketException exception) {
+        // Closed by stop()
+        return;
+      } catch (IOException exception) {
+        Timber.w(exception, "Tile proxy stopped accepting connections");
+        return;
+      }
+      try {
+        serveExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            serve(socket);
+          }
+        });
+      } catch (RejectedExecutionException exception) {
+        // Stopped while the connection was accepted
+        closeQuietly(socket);
+        return;
+      }
+    }
+  }
+
+  @WorkerThread
+  private void serve(Socket socket) {
+    try {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+      String requestLine = reader.readLine();
+      // Skip the headers, nothing in them changes the answer
+      String header = reader.readLine();
+      while (header != null && !header.isEmpty()) {
+        header = reader.readLine();
+      }
+
+      Matcher matcher = requestLine != null ? TILE_PATH.matcher(requestLine) : null;
+      if (matcher == null || !matcher.matches()) {
+        respond(socket, 404, null);
+        return;
+      }
+      int z = Integer.parseInt(matcher.group(1));
+      int x = Integer.parseInt(matcher.group(2));
+      int y = Integer.parseInt(matcher.group(3));
+      byte[] tile = cache.get(getTileKey(z, x, y));
+      if (tile != null) {
+        respond(socket, 200, tile);
+        return;
+      }
+      int[] status = new int[1];
+      tile = fetch(z, x, y, status);
+      respond(socket, status[0], tile);
+    } catch (IOException exception) {
+      Timber.w(exception, "Unable to serve tile");
+      try {
+        respond(socket, 502, null);
+      } catch (IOException ignored) {
+        // The map gave up on the request
+      }
+    } finally {
+      closeQuietly(socket);
+    }
+  }
+
+  /**
+   * Fetch a tile from upstream, and cache it if the request succeeded.
+   *
+   * @param status receives the status code of the upstream response
+   * @return the tile, or null if the request didn't succeed
+   */
+  @WorkerThread
+  @Nullable
+  private byte[] fetch(int z, int x, int y, int[] status) throws IOException {
+    String url = upstreamUrl
+      .replace("{z}", String.valueOf(z))
+      .replace("{x}", String.valueOf(x))
+      .replace("{y}", String.valueOf(y));
+    Response response = client.newCall(new Request.Builder().url(url).build()).execute();
+    try {
+      status[0] = response.code();
+      ResponseBody body = response.body();
+      if (!response.isSuccessful() || body == null) {
+        return null;
+      }
+      byte[] tile = body.bytes();
+      cache.put(getTileKey(z, x, y), tile);
+      return tile;
+    } finally {
+      response.close();
+    }
+  }
+
+  private static void respond(Socket socket, int status, @Nullable byte[] body) throws IOException {
+    int length = body != null ? body.length : 0;
+    String headers = String.format(Locale.US,
+      "HTTP/1.1 %d %s\r\nContent-Type: application/x-protobuf\r\nContent-Length: %d\r\nConnection: close\r\n\r\n",
+      status, status == 200 ? "OK" : "Error", length);
+    OutputStream output = socket.getOutputStream();
+    output.write(headers.getBytes(UTF_8));
+    if (body != null) {
+      output.write(body);
+    }
+    output.flush();
+  }
+
+  private static void closeQuietly(Socket socket) {
+    try {
+      socket.close();
+    } catch (IOException ignored) {
+      // Nothing left to do with the socket
+    }
+  }
+
+  private static String getTileKey(int z, int x, int y) {
+    return z + "/" + x + "/" + y;
+  }
+
+  private static ThreadFactory createThreadFactory(final String name) {
+    return new ThreadFactory() {
+      @Override
+      public Thread newThread(@NonNull final Runnable runnable) {
+        return new Thread(new Runnable() {
+          @Override
+          public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+          }
+        }, name);
+      }
+    };
+  }
+}
@@ -0,0 +1,377 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+
+import com.mapbox.api.matrix.v1.MapboxMatrix;
+import com.mapbox.api.matrix.v1.models.MatrixResponse;
+import com.mapbox.core.constants.Constants;
+import com.mapbox.geojson.Point;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import retrofit2.Response;
+import timber.log.Timber;
+
+/**
+ * Requests the durations between all pairs of a set of points from the Matrix API, for more points than a
+ * single request accepts.
+ * <p>
+ * The points are split into groups of at most half the coordinates of a request, and every pair of groups is
+ * a block: one request with the first group as sources and the second as destinations. Blocks are
+ * independent, so they run concurrently, on a fixed number of threads which bounds the requests in flight.
+ * Each block writes its own cells of a single row-major matrix, so the result is stitched together as the
+ * blocks come in. With enough permits the matrix takes about as long as its slowest block.
+ * </p>
+ * <p>
+ * Blocks which fail with a network error, rate limiting or a server error are retried after an exponential
+ * backoff. Other errors, and blocks which keep failing, fail the whole matrix.
+ * </p>
+ * <p>
+ * The base URL can point at a local server, to exercise the tiling and retries without the API.
+ * </p>
+ */
+public final class TiledMatrixClient {
+
+  public static final int MAX_COORDINATES_PER_REQUEST = 25;
+  private static final int DEFAULT_CONCURRENT_REQUESTS = 4;
+  private static final int DEFAULT_ATTEMPTS = 3;
+  private static final long INITIAL_BACKOFF_MS = 500;
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+  private final String accessToken;
+  private final String profile;
+  private final String baseUrl;
+  private final int maxAttempts;
+  private final ExecutorService executor;
+  private Handler mainHandler;
+
+  /**
+   * Called once the matrix is complete or one of its blocks failed for good.
+   */
+  public interface Callback {
+
+    /**
+     * @param durations the duration in seconds from each point to each point, row by row. Pairs without a
+     *                  route are NaN.
+     */
+    void onDurations(@NonNull double[] durations);
+
+    void onFailure(@NonNull IOException exception);
+  }
+
+  /**
+   * A matrix which is being requested.
+   */
+  public static final class Request {
+
+    private final AtomicInteger remainingBlocks = new AtomicInteger();
+    // Set once the callback was called or the request was cancelled, so it's called at most once
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private volatile boolean cancelled;
+
+    /**
+     * Stop requesting blocks, the callback isn't called anymore. Blocks in flight still complete.
+     */
+    public void cancel() {
+      cancelled = true;
+      finished.set(true);
+    }
+
+    public boolean isCancelled() {
+      return cancelled;
+    }
+  }
+
+  /**
+   * Create a client for the Mapbox API, with the default number of permits and attempts.
+   *
+   * @param accessToken the access token to make the requests with
+   * @param profile     the routing profile, one of the DirectionsCriteria profiles
+   */
+  public TiledMatrixClient(@NonNull String accessToken, @NonNull String profile) {
+    this(accessToken, profile, Constants.BASE_API_URL, DEFAULT_CONCURRENT_REQUESTS, DEFAULT_ATTEMPTS);
+  }
+
+  /**
+   * @param accessToken           the access token to make the requests with
+   * @param profile               the routing profile, one of the DirectionsCriteria profiles
+   * @param baseUrl               the URL of the API
+   * @param maxConcurrentRequests the number of blocks which are requested at the same time
+   * @param maxAttempts           the number of times a block is requested before the matrix fails
+   */
+  public TiledMatrixClient(@NonNull String accessToken, @NonNull String profile, @NonNull String baseUrl,
+                           int maxConcurrentRequests, int maxAttempts) {
+    this.accessToken = accessToken;
+    this.profile = profile;
+    this.baseUrl = baseUrl;
+    this.maxAttempts = Math.max(1, maxAttempts);
+    this.executor = Executors.newFixedThreadPool(Math.max(1, maxConcurrentRequests), new ThreadFactory() {
+      @Override
+      public Thread newThread(@NonNull Runnable runnable) {
+        return new Thread(runnable, "TiledMatrixClient");
+      }
+    });
+  }
+
+  /**
+   * Request the matrix in the background.
+   *
+   * @param points   the points, in the order of the rows and columns of the matrix
+   * @param callback called on the main thread with the result, unless the request is cancelled
+   * @return the request, to cancel it with
+   */
+  @MainThread
+  @NonNull
+  public Request requestDurations(@NonNull List<Point> points, @NonNull final Callback callback) {
+    if (mainHandler == null) {
+      mainHandler = new Handler(Looper.getMainLooper());
+    }
+    final Request request = new Request();
+    start(points, request, new Callback() {
+      @Override
+      public void onDurations(@NonNull final double[] durations) {
+        mainHandler.post(new Runnable() {
+          @Override
+          public void run() {
+            if (!request.isCancelled()) {
+              callback.onDurations(durations);
+            }
+          }
+        });
+      }
+
+      @Override
+      public void onFailure(@NonNull final IOException exception) {
+        mainHandler.post(new Runnable() {
+          @Override
+          public void run() {
+            if (!request.isCancelled()) {
+              callback.onFailure(exception);
+            }
+          }
+        });
+      }
+    });
+    return request;
+  }
+
+  /**
+   * Request the matrix and wait for it. Not to be called from a callback of this client, which would wait for
+   * its own thread.
+   *
+   * @param points the points, in the order of the rows and columns of the matrix
+   * @return the duration in seconds from each point to each point, row by row. Pairs without a route are NaN.
+   * @throws IOException if a block failed for good
+   */
+  @WorkerThread
+  @NonNull
+  public double[] getDurations(@NonNull List<Point> points) throws IOException {
+    final CountDownLatch done = new CountDownLatch(1);
+    final double[][] durations = new double[1][];
+    final IOException[] failure = new IOException[1];
+    Request request = new Request();
+    start(points, request, new Callback() {
+      @Override
+      public void onDurations(@NonNull double[] result) {
+        durations[0] = result;
+        done.countDown();
+      }
+
+      @Override
+      public void onFailure(@NonNull IOException exception) {
+        failure[0] = exception;
+        done.countDown();
+      }
+    });
+    try {
+      done.await();
+    } catch (InterruptedException exception) {
+      request.cancel();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the matrix");
+    }
+    if (failure[0] != null) {
+      throw failure[0];
+    }
+    return durations[0];
+  }
+
+  /**
+   * Stop all requests, the client can't be used anymore.
+   */
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private void start(final List<Point> points, final Request request, final Callback callback) {
+    final int size = points.size();
+    final double[] matrix = new double[size * size];
+    if (size < 2) {
+      // A single point is zero seconds away from itself, the API wants at least two
+      request.finished.set(true);
+      callback.onDurations(matrix);
+      return;
+    }
+
+    List<Block> blocks = createBlocks(size);
+    request.remainingBlocks.set(blocks.size());
+    for (final Block block : blocks) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          if (request.finished.get()) {
+            return;
+          }
+          try {
+            fetchBlock(points, block, request, matrix);
+          } catch (IOException exception) {
+            fail(request, callback, exception);
+            return;
+          } catch (RuntimeException exception) {
+            // Like a request the builder rejects, which would otherwise leave the matrix waiting forever
+            fail(request, callback, new IOException("Unable to request a matrix block", exception));
+            return;
+          }
+          // The last block to finish sees the cells of all others, they were written before their decrement
+          if (request.remainingBlocks.decrementAndGet() == 0 && request.finished.compareAndSet(false, true)) {
+            callback.onDurations(matrix);
+          }
+        }
+      });
+    }
+  }
+
+  private static void fail(Request request, Callback callback, IOException exception) {
+    if (request.finished.compareAndSet(false, true)) {
+      callback.onFailure(exception);
+    }
+  }
+
+  /**
+   * Split the points into groups of consecutive points and pair every group with every group. Groups are
+   * about equally large, so no block is left with a handful of points.
+   */
+  private static List<Block> createBlocks(int size) {
+    int groupCount = size <= MAX_COORDINATES_PER_REQUEST ? 1
+      : (size + MAX_COORDINATES_PER_REQUEST / 2 - 1) / (MAX_COORDINATES_PER_REQUEST / 2);
+    int[] groupStarts = new int[groupCount + 1];
+    for (int group = 0; group <= groupCount; group++) {
+      groupStarts[group] = (int) ((long) group * size / groupCount);
+    }
+    List<Block> blocks = new ArrayList<>(groupCount * groupCount);
+    for (int sources = 0; sources < groupCount; sources++) {
+      for (int destinations = 0; destinations < groupCount; destinations++) {
+        blocks.add(new Block(groupStarts[sources], groupStarts[sources + 1], groupStarts[destinations],
+          groupStarts[destinations + 1]));
+      }
+    }
+    return blocks;
+  }
+
+  @WorkerThread
+  private void fetchBlock(List<Point> points, Block block, Request request, double[] matrix)
+    throws IOException {
+    MapboxMatrix.Builder builder = MapboxMatrix.builder()
+      .accessToken(accessToken)
+      .profile(profile)
+      .baseUrl(baseUrl)
+      .coordinates(new ArrayList<>(points.subList(block.sourceFrom, block.sourceTo)));
+    if (block.sourceFrom != block.destinationFrom) {
+      // Sources come first in the request, the destinations after them
+      int sourceCount = block.sourceTo - block.sourceFrom;
+      int destinationCount = block.destinationTo - block.destinationFrom;
+      for (int i = block.destinationFrom; i < block.destinationTo; i++) {
+        builder.coordinate(points.get(i));
+      }
+      builder.sources(range(0, sourceCount));
+      builder.destinations(range(sourceCount, sourceCount + destinationCount));
+    }
+
+    for (int attempt = 1; ; attempt++) {
+      Response<MatrixResponse> response = null;
+      IOException failure = null;
+      try {
+        // A service executes its call only once, every attempt needs a new one
+        response = builder.build().executeCall();
+      } catch (IOException exception) {
+        failure = exception;
+      }
+      if (response != null) {
+        MatrixResponse body = response.body();
+        if (response.isSuccessful() && body != null && body.durations() != null) {
+          copyDurations(body.durations(), block, points.size(), matrix);
+          return;
+        }
+        failure = new IOException("Matrix API responded " + response.code() + " for a block");
+        if (response.code() != HTTP_TOO_MANY_REQUESTS && response.code() < 500) {
+          throw failure;
+        }
+      }
+      if (attempt >= maxAttempts || request.isCancelled()) {
+        throw failure;
+      }
+      Timber.w(failure, "Matrix block failed, retrying after attempt %d", attempt);
+      try {
+        Thread.sleep(INITIAL_BACKOFF_MS << (attempt - 1));
+      } catch (InterruptedException exception) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while retrying a matrix block");
+      }
+    }
+  }
+
+  /**
+   * Copy the rows of a block into its cells of the matrix, missing durations become NaN.
+   */
+  private static void copyDurations(List<Double[]> rows, Block block, int size, double[] matrix) {
+    int sourceCount = block.sourceTo - block.sourceFrom;
+    int destinationCount = block.destinationTo - block.destinationFrom;
+    for (int source = 0; source < sourceCount; source++) {
+      Double[] row = source < rows.size() ? rows.get(source) : null;
+      int offset = (block.sourceFrom + source) * size + block.destinationFrom;
+      for (int destination = 0; destination < destinationCount; destination++) {
+        Double duration = row != null && destination < row.length ? row[destination] : null;
+        matrix[offset + destination] = duration != null ? duration : Double.NaN;
+      }
+    }
+  }
+
+  private static Integer[] range(int from, int to) {
+    Integer[] range = new Integer[to - from];
+    for (int i = 0; i < range.length; i++) {
+      range[i] = from + i;
+    }
+    return range;
+  }
+
+  /**
+   * The rows [sourceFrom, sourceTo) and columns [destinationFrom, destinationTo) of the matrix.
+   */
+  private static final class Block {
+
+    final int sourceFrom;
+    final int sourceTo;
+    final int destinationFrom;
+    final int destinationTo;
+
+    Block(int sourceFrom, int sourceTo, int destinationFrom, int destinationTo) {
+      this.sourceFrom = sourceFrom;
+      this.sourceTo = sourceTo;
+      this.destinationFrom = destinationFrom;
+      this.destinationTo = destinationTo;
+    }
+  }
+}
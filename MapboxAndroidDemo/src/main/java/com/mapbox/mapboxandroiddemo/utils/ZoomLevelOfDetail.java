@@ -0,0 +1,380 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.gson.JsonObject;
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.Geometry;
+import com.mapbox.geojson.GeometryCollection;
+import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.MultiLineString;
+import com.mapbox.geojson.MultiPoint;
+import com.mapbox.geojson.MultiPolygon;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.Polygon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Level of detail pyramid of a FeatureCollection: its lines and polygons simplified for every zoom level up
+ * to a maximum, from which on they are shown in full.
+ * <p>
+ * Features are projected to Web Mercator once, and every vertex gets the Douglas-Peucker importance it has
+ * within its line or ring. The variant of a line or polygon for a zoom level keeps the vertices which are
+ * more important than half a pixel at that zoom level, so it can't be told apart from the original there,
+ * and is left out if it collapses below that. Variants are built the first time a zoom level needs them
+ * and kept for as long as the pyramid, so everything showing a zoom level shares the same instances.
+ * Points are never simplified.
+ * </p>
+ * <p>
+ * {@link GeoJsonTiler} cuts the pyramid into tiles.
+ * </p>
+ */
+final class ZoomLevelOfDetail {
+
+  static final byte TYPE_POINT = 0;
+  static final byte TYPE_LINE = 1;
+  static final byte TYPE_POLYGON = 2;
+
+  // Half a pixel of a 512 pixel tile, so simplified lines never move by more than antialiasing blurs
+  private static final double TOLERANCE = 0.5 / 512;
+  private static final int MIN_RING_SIZE = 4;
+
+  private final int maxZoom;
+  private final List<ProjectedFeature> features;
+
+  private ZoomLevelOfDetail(int maxZoom, List<ProjectedFeature> features) {
+    this.maxZoom = maxZoom;
+    this.features = features;
+  }
+
+  /**
+   * Project a FeatureCollection and compute the importance of its vertices. This walks all coordinates,
+   * call it off the main thread for large collections.
+   *
+   * @param featureCollection the features
+   * @param maxZoom           the zoom level from which on lines and polygons keep all their vertices
+   * @return the pyramid, whose variants are built when they're first needed
+   */
+  @NonNull
+  static ZoomLevelOfDetail build(@NonNull FeatureCollection featureCollection, int maxZoom) {
+    List<ProjectedFeature> converted = new ArrayList<>();
+    List<Feature> features = featureCollection.features();
+    if (features != null) {
+      for (Feature feature : features) {
+        convert(feature, feature.geometry(), converted);
+      }
+    }
+    return new ZoomLevelOfDetail(maxZoom, converted);
+  }
+
+  int getMaxZoom() {
+    return maxZoom;
+  }
+
+  /**
+   * @return the projected features, a GeometryCollection is split into one per geometry
+   */
+  List<ProjectedFeature> getFeatures() {
+    return features;
+  }
+
+  /**
+   * Get a feature as it's shown at a zoom level. Lines and polygons are built once per zoom level.
+   *
+   * @param feature one of the projected features, or points clipped from one
+   * @param zoom    the zoom level
+   * @return the feature in longitude and latitude, or null if it collapses at the zoom level
+   */
+  @Nullable
+  Feature getFeature(@NonNull ProjectedFeature feature, int zoom) {
+    if (feature.type == TYPE_POINT) {
+      return feature.toFeature(0);
+    }
+    int level = Math.max(0, Math.min(zoom, maxZoom));
+    return feature.getVariant(level, maxZoom + 1, level < maxZoom ? TOLERANCE / (1 << level) : 0);
+  }
+
+  /**
+   * Web Mercator x in the range 0 to 1, west to east.
+   */
+  static double projectX(double longitude) {
+    return longitude / 360 + 0.5;
+  }
+
+  /**
+   * Web Mercator y in the range 0 to 1, north to south, clamped near the poles.
+   */
+  static double projectY(double latitude) {
+    double sin = Math.sin(Math.toRadians(latitude));
+    double y = 0.5 - 0.25 * Math.log((1 + sin) / (1 - sin)) / Math.PI;
+    return y < 0 ? 0 : (y > 1 ? 1 : y);
+  }
+
+  static double unprojectLongitude(double x) {
+    return (x - 0.5) * 360;
+  }
+
+  static double unprojectLatitude(double y) {
+    return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y))));
+  }
+
+  private static void convert(Feature feature, @Nullable Geometry geometry, List<ProjectedFeature> converted) {
+    List<double[]> parts = new ArrayList<>();
+    List<Integer> polygonStarts = null;
+    byte type;
+    if (geometry instanceof Point) {
+      type = TYPE_POINT;
+      parts.add(projectPoints(Collections.singletonList((Point) geometry)));
+    } else if (geometry instanceof MultiPoint) {
+      type = TYPE_POINT;
+      parts.add(projectPoints(((MultiPoint) geometry).coordinates()));
+    } else if (geometry instanceof LineString) {
+      type = TYPE_LINE;
+      parts.add(projectLine(((LineString) geometry).coordinates()));
+    } else if (geometry instanceof MultiLineString) {
+      type = TYPE_LINE;
+      for (List<Point> line : ((MultiLineString) geometry).coordinates()) {
+        parts.add(projectLine(line));
+      }
+    } else if (geometry instanceof Polygon) {
+      type = TYPE_POLYGON;
+      polygonStarts = Collections.singletonList(0);
+      for (List<Point> ring : ((Polygon) geometry).coordinates()) {
+        parts.add(projectLine(ring));
+      }
+    } else if (geometry instanceof MultiPolygon) {
+      type = TYPE_POLYGON;
+      polygonStarts = new ArrayList<>();
+      for (List<List<Point>> polygon : ((MultiPolygon) geometry).coordinates()) {
+        polygonStarts.add(parts.size());
+        for (List<Point> ring : polygon) {
+          parts.add(projectLine(ring));
+        }
+      }
+    } else if (geometry instanceof GeometryCollection) {
+      // Like geojson-vt, the geometries of a collection become features of their own
+      for (Geometry child : ((GeometryCollection) geometry).geometries()) {
+        convert(feature, child, converted);
+      }
+      return;
+    } else {
+      return;
+    }
+    ProjectedFeature projectedFeature = new ProjectedFeature(feature, type, parts, toArray(polygonStarts));
+    if (projectedFeature.vertexCount > 0) {
+      converted.add(projectedFeature);
+    }
+  }
+
+  private static double[] projectPoints(List<Point> points) {
+    double[] projected = new double[points.size() * 3];
+    for (int i = 0; i < points.size(); i++) {
+      projected[i * 3] = projectX(points.get(i).longitude());
+      projected[i * 3 + 1] = projectY(points.get(i).latitude());
+      projected[i * 3 + 2] = 1;
+    }
+    return projected;
+  }
+
+  private static double[] projectLine(List<Point> points) {
+    double[] projected = projectPoints(points);
+    int last = points.size() - 1;
+    if (last > 1) {
+      for (int i = 1; i < last; i++) {
+        projected[i * 3 + 2] = 0;
+      }
+      computeImportance(projected, last);
+    }
+    return projected;
+  }
+
+  /**
+   * Runs Douglas-Peucker without a tolerance and stores, for every vertex, the squared distance at which
+   * it would have been dropped. The end points always stay.
+   */
+  private static void computeImportance(double[] line, int last) {
+    int[] stack = new int[64];
+    int stackSize = 0;
+    stack[stackSize++] = 0;
+    stack[stackSize++] = last;
+    while (stackSize > 0) {
+      int end = stack[--stackSize];
+      int start = stack[--stackSize];
+      double maxDistance = -1;
+      int index = -1;
+      for (int i = start + 1; i < end; i++) {
+        double distance = squaredSegmentDistance(line, i, start, end);
+        if (distance > maxDistance) {
+          maxDistance = distance;
+          index = i;
+        }
+      }
+      if (index < 0) {
+        continue;
+      }
+      line[index * 3 + 2] = maxDistance;
+      if (stackSize + 4 > stack.length) {
+        stack = Arrays.copyOf(stack, stack.length * 2);
+      }
+      if (index - start > 1) {
+        stack[stackSize++] = start;
+        stack[stackSize++] = index;
+      }
+      if (end - index > 1) {
+        stack[stackSize++] = index;
+        stack[stackSize++] = end;
+      }
+    }
+  }
+
+  private static double squaredSegmentDistance(double[] line, int point, int start, int end) {
+    double px = line[point * 3];
+    double py = line[point * 3 + 1];
+    double x = line[start * 3];
+    double y = line[start * 3 + 1];
+    double dx = line[end * 3] - x;
+    double dy = line[end * 3 + 1] - y;
+    if (dx != 0 || dy != 0) {
+      double t = ((px - x) * dx + (py - y) * dy) / (dx * dx + dy * dy);
+      if (t > 1) {
+        x = line[end * 3];
+        y = line[end * 3 + 1];
+      } else if (t > 0) {
+        x += dx * t;
+        y += dy * t;
+      }
+    }
+    dx = px - x;
+    dy = py - y;
+    return dx * dx + dy * dy;
+  }
+
+  private static int[] toArray(@Nullable List<Integer> list) {
+    if (list == null) {
+      return null;
+    }
+    int[] array = new int[list.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = list.get(i);
+    }
+    return array;
+  }
+
+  /**
+   * A feature, or one geometry of a GeometryCollection, projected to Web Mercator.
+   */
+  static final class ProjectedFeature {
+
+    final Feature feature;
+    final byte type;
+    // Points, lines or the rings of all polygons, as x, y and importance triples
+    final List<double[]> parts;
+    // For polygons, the index of the outer ring of each polygon in parts
+    final int[] polygonStarts;
+    final double[] bounds = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+      Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+    final int vertexCount;
+    // The variant of each zoom level and whether it was built, as a variant can be null
+    private Feature[] variants;
+    private boolean[] built;
+
+    ProjectedFeature(Feature feature, byte type, List<double[]> parts, int[] polygonStarts) {
+      this.feature = feature;
+      this.type = type;
+      this.parts = parts;
+      this.polygonStarts = polygonStarts;
+      int vertexCount = 0;
+      for (double[] part : parts) {
+        for (int i = 0; i < part.length; i += 3) {
+          bounds[0] = Math.min(bounds[0], part[i]);
+          bounds[1] = Math.min(bounds[1], part[i + 1]);
+          bounds[2] = Math.max(bounds[2], part[i]);
+          bounds[3] = Math.max(bounds[3], part[i + 1]);
+        }
+        vertexCount += part.length / 3;
+      }
+      this.vertexCount = vertexCount;
+    }
+
+    synchronized Feature getVariant(int level, int levelCount, double tolerance) {
+      if (variants == null) {
+        variants = new Feature[levelCount];
+        built = new boolean[levelCount];
+      }
+      if (!built[level]) {
+        variants[level] = toFeature(tolerance);
+        built[level] = true;
+      }
+      return variants[level];
+    }
+
+    /**
+     * Builds the feature in longitude and latitude, without the vertices which aren't more important than
+     * the tolerance. Returns null if nothing is left.
+     */
+    @Nullable
+    Feature toFeature(double tolerance) {
+      double squaredTolerance = tolerance * tolerance;
+      Geometry geometry;
+      if (type == TYPE_POINT) {
+        List<Point> points = toPoints(parts.get(0), -1);
+        for (int part = 1; part < parts.size(); part++) {
+          points.addAll(toPoints(parts.get(part), -1));
+        }
+        geometry = points.size() == 1 ? points.get(0) : MultiPoint.fromLngLats(points);
+      } else if (type == TYPE_LINE) {
+        List<List<Point>> lines = new ArrayList<>(parts.size());
+        for (double[] part : parts) {
+          List<Point> line = toPoints(part, squaredTolerance);
+          if (line.size() >= 2) {
+            lines.add(line);
+          }
+        }
+        if (lines.isEmpty()) {
+          return null;
+        }
+        geometry = lines.size() == 1 ? LineString.fromLngLats(lines.get(0)) : MultiLineString.fromLngLats(lines);
+      } else {
+        List<List<List<Point>>> polygons = new ArrayList<>(polygonStarts.length);
+        for (int polygon = 0; polygon < polygonStarts.length; polygon++) {
+          int end = polygon + 1 < polygonStarts.length ? polygonStarts[polygon + 1] : parts.size();
+          List<List<Point>> rings = new ArrayList<>();
+          for (int part = polygonStarts[polygon]; part < end; part++) {
+            List<Point> ring = toPoints(parts.get(part), squaredTolerance);
+            if (ring.size() >= MIN_RING_SIZE) {
+              rings.add(ring);
+            } else if (part == polygonStarts[polygon]) {
+              // The outer ring collapsed below the tolerance, the polygon wouldn't cover a pixel
+              break;
+            }
+          }
+          if (!rings.isEmpty()) {
+            polygons.add(rings);
+          }
+        }
+        if (polygons.isEmpty()) {
+          return null;
+        }
+        geometry = polygons.size() == 1 ? Polygon.fromLngLats(polygons.get(0)) : MultiPolygon.fromLngLats(polygons);
+      }
+      JsonObject properties = feature.properties();
+      return Feature.fromGeometry(geometry, properties, feature.id());
+    }
+
+    private static List<Point> toPoints(double[] part, double squaredTolerance) {
+      List<Point> points = new ArrayList<>(part.length / 3);
+      for (int i = 0; i < part.length; i += 3) {
+        if (part[i + 2] > squaredTolerance) {
+          points.add(Point.fromLngLat(unprojectLongitude(part[i]), unprojectLatitude(part[i + 1])));
+        }
+      }
+      return points;
+    }
+  }
+}